@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Times how long each mod's entrypoints take to start up, split into loading (and transforming) their classes,
+ * creating them, and running them.
+ *
+ * <p>Only a few timestamps are taken per entrypoint, so this is on unless {@code -Dfabric.loader.profileEntrypoints}
+ * is {@code false}. Once the game's entrypoints have run, the slowest mods are logged and the full timings are written
+ * to {@code .fabric/entrypointProfile.json} in the game directory.</p>
+ */
+public final class EntrypointProfiler {
+	private static final int LOGGED_MODS = 5;
+
+	private static final class Timing {
+		final String modId, key;
+		long loadTime, createTime, runTime;
+
+		Timing(String modId, String key) {
+			this.modId = modId;
+			this.key = key;
+		}
+
+		long getTotalTime() {
+			return loadTime + createTime + runTime;
+		}
+	}
+
+	private final boolean enabled = Boolean.parseBoolean(System.getProperty("fabric.loader.profileEntrypoints", "true"));
+	private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+	private final Map<Object, String> owners = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	EntrypointProfiler() {
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	private Timing get(String modId, String key) {
+		return timings.computeIfAbsent(modId + ':' + key, (k) -> new Timing(modId, key));
+	}
+
+	/**
+	 * Records an entrypoint's class being loaded, and it then being created.
+	 */
+	void recordCreate(String modId, String key, Object entrypoint, long loadTime, long createTime) {
+		Timing timing = get(modId, key);
+
+		synchronized (timing) {
+			timing.loadTime += loadTime;
+			timing.createTime += createTime;
+		}
+
+		if (entrypoint != null) {
+			owners.put(entrypoint, modId);
+		}
+	}
+
+	/**
+	 * Records an entrypoint being run.
+	 *
+	 * @param entrypoint The entrypoint, as returned by {@link FabricLoader#getEntrypoints}.
+	 */
+	public void recordRun(String key, Object entrypoint, long runTime) {
+		String modId = owners.get(entrypoint);
+		if (modId == null) return;
+
+		Timing timing = get(modId, key);
+
+		synchronized (timing) {
+			timing.runTime += runTime;
+		}
+	}
+
+	/**
+	 * Logs the slowest mods to start up, and writes every timing recorded so far to the game directory.
+	 */
+	public void report(Logger logger, Path gameDir) {
+		if (!enabled || timings.isEmpty()) return;
+
+		List<Timing> sorted = new ArrayList<>(timings.values());
+		sorted.sort(Comparator.comparingLong(Timing::getTotalTime).reversed());
+		long total = 0;
+
+		for (Timing timing : sorted) {
+			total += timing.getTotalTime();
+			logger.debug("[EntrypointProfiler] %s (%s): %.1f ms loading, %.1f ms creating, %.1f ms running", timing.modId, timing.key,
+				toMillis(timing.loadTime), toMillis(timing.createTime), toMillis(timing.runTime));
+		}
+
+		logger.info("[EntrypointProfiler] Started the entrypoints of %d mods in %.1f ms, slowest: %s", sorted.stream().map((timing) -> timing.modId).distinct().count(), toMillis(total),
+			sorted.stream().limit(LOGGED_MODS).map((timing) -> String.format("%s (%s) %.1f ms", timing.modId, timing.key, toMillis(timing.getTotalTime()))).collect(Collectors.joining(", ")));
+
+		if (gameDir != null) {
+			Path file = gameDir.resolve(".fabric").resolve("entrypointProfile.json");
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+			try {
+				Files.createDirectories(file.getParent());
+
+				try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8); JsonWriter json = new JsonWriter(writer)) {
+					json.setIndent("\t");
+					json.beginObject();
+					json.name("totalMs").value(toMillis(total));
+					json.name("entrypoints").beginArray();
+
+					for (Timing timing : sorted) {
+						json.beginObject();
+						json.name("mod").value(timing.modId);
+						json.name("key").value(timing.key);
+						json.name("loadMs").value(toMillis(timing.loadTime));
+						json.name("createMs").value(toMillis(timing.createTime));
+						json.name("runMs").value(toMillis(timing.runTime));
+						json.name("totalMs").value(toMillis(timing.getTotalTime()));
+						json.endObject();
+					}
+
+					json.endArray();
+					json.endObject();
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				logger.warn("Failed to write entrypoint profile to " + file, e);
+			}
+		}
+	}
+
+	private static double toMillis(long nanos) {
+		return Math.round(nanos / 1e4) / 100.0;
+	}
+}
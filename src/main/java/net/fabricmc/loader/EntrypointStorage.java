@@ -25,11 +25,17 @@ import net.fabricmc.loader.launch.common.FabricLauncherBase;
 import net.fabricmc.loader.metadata.EntrypointMetadata;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 class EntrypointStorage {
 	static interface Entry {
 		<T> T getOrCreate(Class<T> type) throws Exception;
+		ModContainer getModContainer();
+		String getValue();
 	}
 
 	private static class OldEntry implements Entry {
@@ -54,7 +60,17 @@ class EntrypointStorage {
 		}
 
 		@Override
-		public <T> T getOrCreate(Class<T> type) throws Exception {
+		public ModContainer getModContainer() {
+			return mod;
+		}
+
+		@Override
+		public String getValue() {
+			return value;
+		}
+
+		@Override
+		public synchronized <T> T getOrCreate(Class<T> type) throws Exception {
 			if (object == null) {
 				net.fabricmc.loader.language.LanguageAdapter adapter = (net.fabricmc.loader.language.LanguageAdapter) Class.forName(languageAdapter, true, FabricLauncherBase.getLauncher().getTargetClassLoader()).getConstructor().newInstance();
 				object = adapter.createInstance(value, options);
@@ -73,6 +89,7 @@ class EntrypointStorage {
 		private final ModContainer mod;
 		private final LanguageAdapter adapter;
 		private final String value;
+		/** Guarded by the entry itself, so each instance is only ever created once. */
 		private final Map<Class<?>, Object> instanceMap = new IdentityHashMap<>();
 
 		private NewEntry(ModContainer mod, LanguageAdapter adapter, String value) {
@@ -87,7 +104,17 @@ class EntrypointStorage {
 		}
 
 		@Override
-		public <T> T getOrCreate(Class<T> type) throws Exception {
+		public ModContainer getModContainer() {
+			return mod;
+		}
+
+		@Override
+		public String getValue() {
+			return value;
+		}
+
+		@Override
+		public synchronized <T> T getOrCreate(Class<T> type) throws Exception {
 			Object o = instanceMap.get(type);
 			if (o == null) {
 				o = create(type);
@@ -103,14 +130,20 @@ class EntrypointStorage {
 	}
 
 	private final Map<String, List<Entry>> entryMap = new HashMap<>();
+	/** The classes of every entrypoint, in the order they were registered. */
+	private final Set<String> classNames = new LinkedHashSet<>();
+	/** The entrypoints already looked up, by key and then by type. */
+	private final Map<String, Map<Class<?>, List<?>>> resultCache = new ConcurrentHashMap<>();
 
 	private List<Entry> getOrCreateEntries(String key) {
+		resultCache.remove(key);
 		return entryMap.computeIfAbsent(key, (z) -> new ArrayList<>());
 	}
 
 	protected void addDeprecated(ModContainer modContainer, String adapter, String value) throws ClassNotFoundException, LanguageAdapterException {
 		FabricLoader.INSTANCE.getLogger().debug("Registering 0.3.x old-style initializer " + value + " for mod " + modContainer.getInfo().getId());
 		OldEntry oe = new OldEntry(modContainer, adapter, value);
+		classNames.add(getClassName(value));
 		getOrCreateEntries("main").add(oe);
 		getOrCreateEntries("client").add(oe);
 		getOrCreateEntries("server").add(oe);
@@ -125,19 +158,91 @@ class EntrypointStorage {
 		getOrCreateEntries(key).add(new NewEntry(
 			modContainer, adapterMap.get(metadata.getAdapter()), metadata.getValue()
 		));
+		classNames.add(getClassName(metadata.getValue()));
+	}
+
+	private static String getClassName(String value) {
+		int split = value.indexOf("::");
+		return split >= 0 ? value.substring(0, split) : value;
+	}
+
+	/**
+	 * Starts loading the class of every entrypoint on a pool of threads, so they are already loaded (and transformed)
+	 * by the time they are needed, without waiting for them to be. Classes are only loaded, not initialized: the
+	 * entrypoints are still created one at a time, in order, once they are asked for.
+	 */
+	protected void preloadClasses(ClassLoader classLoader) {
+		int threads = Math.min(classNames.size(), Math.max(1, Integer.getInteger("fabric.loader.entrypointThreads", Runtime.getRuntime().availableProcessors())));
+		if (threads == 0) return;
+
+		FabricLoader.INSTANCE.getLogger().debug("Preloading " + classNames.size() + " entrypoint classes on " + threads + " threads");
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, (task) -> {
+			Thread thread = new Thread(task, "Fabric Entrypoint Loader #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(classLoader);
+			return thread;
+		});
+
+		for (String name : classNames) {
+			executor.execute(() -> {
+				try {
+					Class.forName(name, false, classLoader);
+				} catch (Throwable t) {
+					// The same failure comes up again, and is reported properly, once the entrypoint is created
+					FabricLoader.INSTANCE.getLogger().debug("Failed to preload entrypoint class " + name, t);
+				}
+			});
+		}
+
+		// The threads go away once everything submitted is loaded
+		executor.shutdown();
+	}
+
+	private static void loadClass(Entry entry) {
+		try {
+			Class.forName(getClassName(entry.getValue()), false, FabricLauncherBase.getLauncher().getTargetClassLoader());
+		} catch (ClassNotFoundException e) {
+			// Left to be reported when the entry is created
+		}
 	}
 
+	/**
+	 * @return The entrypoints for the given key which are of the given type, as an unmodifiable list which is reused for
+	 * every later lookup of the same key and type.
+	 */
 	protected <T> List<T> getEntrypoints(String key, Class<T> type) {
+		Map<Class<?>, List<?>> cached = resultCache.get(key);
+
+		if (cached != null) {
+			List<?> ret = cached.get(type);
+			//noinspection unchecked
+			if (ret != null) return (List<T>) ret;
+		}
+
 		List<Entry> entries = entryMap.get(key);
 		if (entries == null) {
 			return Collections.emptyList();
 		}
 
+		EntrypointProfiler profiler = FabricLoader.INSTANCE.getEntrypointProfiler();
 		boolean hadException = false;
 		List<T> results = new ArrayList<>(entries.size());
 		for (Entry entry : entries) {
 			try {
-				T result = entry.getOrCreate(type);
+				T result;
+
+				if (profiler.isEnabled()) {
+					// Load the class first to time it separately, this is what creating the entry would do first anyway
+					long start = System.nanoTime();
+					loadClass(entry);
+					long loaded = System.nanoTime();
+					result = entry.getOrCreate(type);
+					profiler.recordCreate(entry.getModContainer().getInfo().getId(), key, result, loaded - start, System.nanoTime() - loaded);
+				} else {
+					result = entry.getOrCreate(type);
+				}
+
 				if (result != null) {
 					results.add(result);
 				}
@@ -149,8 +254,13 @@ class EntrypointStorage {
 
 		if (hadException) {
 			throw new EntrypointException("Could not look up entries for entrypoint " + key + "!");
-		} else {
-			return results;
 		}
+
+		// Not computed in place, as creating the entrypoints can look up others. Every thread creates the same instances
+		// anyway, so whichever list is cached first is as good as any other.
+		List<T> ret = Collections.unmodifiableList(results);
+		List<?> previous = resultCache.computeIfAbsent(key, (k) -> new ConcurrentHashMap<>()).putIfAbsent(type, ret);
+		//noinspection unchecked
+		return previous != null ? (List<T>) previous : ret;
 	}
 }
@@ -55,6 +55,7 @@ public class FabricLoader implements net.fabricmc.loader.api.FabricLoader {
 
 	private final Map<String, LanguageAdapter> adapterMap = new HashMap<>();
 	private final EntrypointStorage entrypointStorage = new EntrypointStorage();
+	private final EntrypointProfiler entrypointProfiler = new EntrypointProfiler();
 
 	private boolean frozen = false;
 
@@ -167,6 +168,10 @@ public class FabricLoader implements net.fabricmc.loader.api.FabricLoader {
 		for (ModCandidate candidate : candidateMap.values()) {
 			addMod(candidate);
 		}
+
+		if (Boolean.getBoolean("fabric.loader.watchMods")) {
+			ModDirectoryWatcher.start(this, resolver, getModsDirectory().toPath(), candidateMap);
+		}
 	}
 
 	protected void finishModLoading() {
@@ -186,11 +191,15 @@ public class FabricLoader implements net.fabricmc.loader.api.FabricLoader {
 		return entrypointStorage.getEntrypoints(key, type);
 	}
 
+	public EntrypointProfiler getEntrypointProfiler() {
+		return entrypointProfiler;
+	}
+
 	@Override
 	public MappingResolver getMappingResolver() {
 		if (mappingResolver == null) {
 			mappingResolver = new FabricMappingResolver(
-				FabricLauncherBase.getLauncher().getMappingConfiguration()::getMappings,
+				FabricLauncherBase.getLauncher().getMappingConfiguration()::getBinaryMappings,
 				FabricLauncherBase.getLauncher().getTargetNamespace()
 			);
 		}
@@ -380,6 +389,10 @@ public class FabricLoader implements net.fabricmc.loader.api.FabricLoader {
 				throw new RuntimeException(String.format("Failed to load mod %s (%s)", mod.getInfo().getName(), mod.getOriginUrl().getFile()), e);
 			}
 		}
+
+		if (Boolean.getBoolean("fabric.loader.preloadEntrypoints")) {
+			entrypointStorage.preloadClasses(FabricLauncherBase.getLauncher().getTargetClassLoader());
+		}
 	}
 
 	public Logger getLogger() {
@@ -17,26 +17,35 @@
 package net.fabricmc.loader;
 
 import net.fabricmc.loader.api.MappingResolver;
-import net.fabricmc.mappings.*;
+import net.fabricmc.loader.util.mappings.BinaryMappings;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
+/**
+ * Answers mapping queries straight from the compiled mappings' sorted indices, only remembering what has actually
+ * been asked about: each class name on its own, and each class' members as a whole the first time any of them are.
+ */
 class FabricMappingResolver implements MappingResolver {
-	private final Supplier<Mappings> mappingsSupplier;
+	private final Supplier<BinaryMappings> mappingsSupplier;
 	private final Set<String> namespaces;
-	private final Map<String, NamespaceData> namespaceDataMap = new HashMap<>();
+	private final Map<String, NamespaceData> namespaceDataMap = new ConcurrentHashMap<>();
 	private final String targetNamespace;
 
 	private static class NamespaceData {
-		private final Map<String, String> classNames = new HashMap<>();
-		private final Map<String, String> classNamesInverse = new HashMap<>();
-		private final Map<EntryTriple, String> fieldNames = new HashMap<>();
-		private final Map<EntryTriple, String> methodNames = new HashMap<>();
+		private final int id;
+		private final Map<String, String> classNames = new ConcurrentHashMap<>();
+		private final Map<String, String> classNamesInverse = new ConcurrentHashMap<>();
+		private final Map<String, Map<String, String>> fieldNames = new ConcurrentHashMap<>();
+		private final Map<String, Map<String, String>> methodNames = new ConcurrentHashMap<>();
+
+		NamespaceData(int id) {
+			this.id = id;
+		}
 	}
 
-	FabricMappingResolver(Supplier<Mappings> mappingsSupplier, String targetNamespace) {
+	FabricMappingResolver(Supplier<BinaryMappings> mappingsSupplier, String targetNamespace) {
 		this.mappingsSupplier = mappingsSupplier;
 		this.targetNamespace = targetNamespace;
 		namespaces = Collections.unmodifiableSet(new HashSet<>(mappingsSupplier.get().getNamespaces()));
@@ -48,30 +57,41 @@ class FabricMappingResolver implements MappingResolver {
 				throw new IllegalArgumentException("Unknown namespace: " + namespace);
 			}
 
-			NamespaceData data = new NamespaceData();
-			Mappings mappings = mappingsSupplier.get();
-			Map<String, String> classNameMap = new HashMap<>();
-			Function<String, String> classMapper = (s) -> classNameMap.computeIfAbsent(s, (cname) -> cname.replace('/', '.'));
-			Function<EntryTriple, EntryTriple> tripletMapper = (s) -> new EntryTriple(classMapper.apply(s.getOwner()), s.getName(), s.getDesc());
+			return new NamespaceData(mappingsSupplier.get().getNamespaceId(ns));
+		});
+	}
 
-			for (ClassEntry classEntry : mappings.getClassEntries()) {
-				String fromClass = classMapper.apply(classEntry.get(ns));
-				String toClass = classMapper.apply(classEntry.get(targetNamespace));
+	private String mapClass(int from, int to, String className) {
+		BinaryMappings mappings = mappingsSupplier.get();
+		int cls = mappings.findClass(from, className.replace('.', '/'));
+		String ret = cls >= 0 ? mappings.getClassName(cls, to) : null;
 
-				data.classNames.put(fromClass, toClass);
-				data.classNamesInverse.put(toClass, fromClass);
-			}
+		return ret != null ? ret.replace('/', '.') : className;
+	}
 
-			for (FieldEntry fieldEntry : mappings.getFieldEntries()) {
-				data.fieldNames.put(tripletMapper.apply(fieldEntry.get(ns)), fieldEntry.get(targetNamespace).getName());
-			}
+	/**
+	 * Collects the target names of every member of the given class, keyed on their name and descriptor.
+	 */
+	private Map<String, String> getMemberNames(BinaryMappings.Members members, int from, String owner) {
+		int to = mappingsSupplier.get().getNamespaceId(targetNamespace);
+		int[] found = members.findByOwner(from, owner.replace('.', '/'));
+		if (found.length == 0) return Collections.emptyMap();
 
-			for (MethodEntry methodEntry : mappings.getMethodEntries()) {
-				data.methodNames.put(tripletMapper.apply(methodEntry.get(ns)), methodEntry.get(targetNamespace).getName());
+		Map<String, String> ret = new HashMap<>(found.length * 2);
+
+		for (int member : found) {
+			String name = members.getName(member, to);
+
+			if (name != null) {
+				ret.put(getNameDescKey(members.getName(member, from), members.getDesc(member, from)), name);
 			}
+		}
 
-			return data;
-		});
+		return ret;
+	}
+
+	private static String getNameDescKey(String name, String desc) {
+		return name + ";;" + desc;
 	}
 
 	@Override
@@ -90,7 +110,8 @@ class FabricMappingResolver implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + className);
 		}
 
-		return getNamespaceData(namespace).classNames.getOrDefault(className, className);
+		NamespaceData data = getNamespaceData(namespace);
+		return data.classNames.computeIfAbsent(className, (name) -> mapClass(data.id, mappingsSupplier.get().getNamespaceId(targetNamespace), name));
 	}
 
 	@Override
@@ -99,7 +120,8 @@ class FabricMappingResolver implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + className);
 		}
 
-		return getNamespaceData(namespace).classNamesInverse.getOrDefault(className, className);
+		NamespaceData data = getNamespaceData(namespace);
+		return data.classNamesInverse.computeIfAbsent(className, (name) -> mapClass(mappingsSupplier.get().getNamespaceId(targetNamespace), data.id, name));
 	}
 
 	@Override
@@ -108,7 +130,9 @@ class FabricMappingResolver implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		return getNamespaceData(namespace).fieldNames.getOrDefault(new EntryTriple(owner, name, descriptor), name);
+		NamespaceData data = getNamespaceData(namespace);
+		Map<String, String> names = data.fieldNames.computeIfAbsent(owner, (cls) -> getMemberNames(mappingsSupplier.get().getFields(), data.id, cls));
+		return names.getOrDefault(getNameDescKey(name, descriptor), name);
 	}
 
 	@Override
@@ -117,6 +141,8 @@ class FabricMappingResolver implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		return getNamespaceData(namespace).methodNames.getOrDefault(new EntryTriple(owner, name, descriptor), name);
+		NamespaceData data = getNamespaceData(namespace);
+		Map<String, String> names = data.methodNames.computeIfAbsent(owner, (cls) -> getMemberNames(mappingsSupplier.get().getMethods(), data.id, cls));
+		return names.getOrDefault(getNameDescKey(name, descriptor), name);
 	}
 }
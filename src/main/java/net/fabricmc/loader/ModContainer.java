@@ -63,6 +63,8 @@ public class ModContainer implements net.fabricmc.loader.api.ModContainer {
 		} catch (IOException | UrlConversionException e) {
 			throw new RuntimeException("Failed to find root directory for mod '" + info.getId() + "'!", e);
 		}
+
+		info.compact(root);
 	}
 
 	@Override
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.discovery;
+
+import net.fabricmc.loader.FabricLoader;
+import net.fabricmc.loader.util.UrlConversionException;
+import net.fabricmc.loader.util.UrlUtil;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the mods directory for jars being added, replaced or removed, and logs how the mods loaded would change if
+ * the game were restarted. Classes which have already been loaded can't be swapped out, so nothing is reloaded.
+ *
+ * <p>Only the jars which changed are scanned again, and only once the directory has been left alone for
+ * {@code -Dfabric.loader.watchModsDelay} milliseconds (1000 by default), so jars still being copied in aren't read
+ * half written.</p>
+ */
+public class ModDirectoryWatcher implements Runnable {
+	private final FabricLoader loader;
+	private final ModResolver resolver;
+	private final Path directory;
+	private final Map<String, ModCandidate> loaded;
+	private final WatchService watchService;
+	private final long delay = Long.getLong("fabric.loader.watchModsDelay", 1000);
+
+	private ModDirectoryWatcher(FabricLoader loader, ModResolver resolver, Path directory, Map<String, ModCandidate> loaded, WatchService watchService) {
+		this.loader = loader;
+		this.resolver = resolver;
+		this.directory = directory;
+		this.loaded = loaded;
+		this.watchService = watchService;
+	}
+
+	/**
+	 * Starts watching the given directory on a daemon thread.
+	 *
+	 * @param resolver The resolver which found the loaded mods, which will be used to resolve them again.
+	 * @param loaded The mods which were loaded, to compare later resolutions against.
+	 */
+	public static void start(FabricLoader loader, ModResolver resolver, Path directory, Map<String, ModCandidate> loaded) {
+		WatchService watchService;
+
+		try {
+			watchService = directory.getFileSystem().newWatchService();
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			loader.getLogger().warn("Unable to watch " + directory + " for mod changes", e);
+			return;
+		}
+
+		Thread thread = new Thread(new ModDirectoryWatcher(loader, resolver, directory, new TreeMap<>(loaded), watchService), "Fabric Mod Watcher");
+		thread.setDaemon(true);
+		thread.start();
+
+		loader.getLogger().info("[ModDirectoryWatcher] Watching %s for mod changes", directory);
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				Set<Path> changed = new HashSet<>();
+				WatchKey key = watchService.take();
+
+				// Keep collecting until the directory has settled down
+				while (key != null) {
+					if (!poll(key, changed)) {
+						loader.getLogger().warn("[ModDirectoryWatcher] Stopped watching %s, as it is no longer accessible", directory);
+						return;
+					}
+
+					key = watchService.poll(delay, TimeUnit.MILLISECONDS);
+				}
+
+				if (!changed.isEmpty()) {
+					report(changed);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Shutting down
+		}
+	}
+
+	/**
+	 * Adds the jars affected by the given key's events to the changed set, or every jar if some events were lost.
+	 *
+	 * @return Whether the key is still valid.
+	 */
+	private boolean poll(WatchKey key, Set<Path> changed) {
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Removed jars are dropped by the resolver anyway, so it's enough to rescan what is there now
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+					for (Path path : stream) {
+						changed.add(path);
+					}
+				} catch (IOException e) {
+					loader.getLogger().warn("[ModDirectoryWatcher] Failed to list " + directory, e);
+				}
+			} else {
+				Path path = directory.resolve((Path) event.context());
+
+				if (path.toString().endsWith(".jar")) {
+					changed.add(path);
+				}
+			}
+		}
+
+		return key.reset();
+	}
+
+	private void report(Set<Path> changed) {
+		Set<URL> urls = new HashSet<>();
+
+		for (Path path : changed) {
+			try {
+				urls.add(UrlUtil.asUrl(path));
+			} catch (UrlConversionException e) {
+				throw new RuntimeException("Failed to convert URL for mod '" + path + "'!", e);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		Map<String, ModCandidate> resolved;
+
+		try {
+			resolved = resolver.resolveChanged(loader, urls);
+		} catch (ModResolutionException | RuntimeException e) {
+			loader.getLogger().warn("[ModDirectoryWatcher] Mods changed, but restarting would fail to load them:", e);
+			return;
+		}
+
+		List<String> differences = new ArrayList<>();
+
+		for (ModCandidate candidate : new TreeMap<>(resolved).values()) {
+			String id = candidate.getInfo().getId();
+			ModCandidate old = loaded.get(id);
+			String version = candidate.getInfo().getVersion().getFriendlyString();
+
+			if (old == null) {
+				differences.add("add " + id + "@" + version);
+			} else if (!version.equals(old.getInfo().getVersion().getFriendlyString())) {
+				differences.add("change " + id + " from " + old.getInfo().getVersion().getFriendlyString() + " to " + version);
+			} else if (!candidate.getOriginUrl().equals(old.getOriginUrl()) || urls.contains(candidate.getOriginUrl())) {
+				differences.add("reload " + id + "@" + version + " from " + candidate.getOriginUrl());
+			}
+		}
+
+		for (String id : loaded.keySet()) {
+			if (!resolved.containsKey(id)) {
+				differences.add("remove " + id);
+			}
+		}
+
+		if (differences.isEmpty()) {
+			loader.getLogger().info("[ModDirectoryWatcher] Mods changed, but restarting would load the same mods (checked in %d ms)", System.currentTimeMillis() - start);
+		} else {
+			loader.getLogger().info("[ModDirectoryWatcher] Mods changed, restarting would: %s (checked in %d ms)", String.join(", ", differences), System.currentTimeMillis() - start);
+		}
+	}
+}
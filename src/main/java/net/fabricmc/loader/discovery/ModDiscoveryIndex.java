@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.discovery;
+
+import net.fabricmc.loader.util.HashUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the fabric.mod.json and extracted nested JARs of every mod jar seen on the previous launch, so unchanged
+ * jars don't have to be opened again to find them.
+ *
+ * <p>A jar is unchanged if its size and modification time match, or failing that if its size and contents hash do
+ * (such as after being copied without preserving times). Only jars on the default file system are indexed, and
+ * anything not seen during a launch is dropped from the index when it is saved.</p>
+ */
+class ModDiscoveryIndex {
+	private static final int MAGIC = 0x464D4449; // FMDI
+	private static final int FORMAT_VERSION = 2;
+
+	static final class Entry {
+		private final long size, lastModified;
+		private final byte[] hash;
+		private final byte[] modJson;
+		private final List<String> nestedJars;
+
+		private Entry(long size, long lastModified, byte[] hash, byte[] modJson, List<String> nestedJars) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.modJson = modJson;
+			this.nestedJars = nestedJars;
+		}
+
+		/**
+		 * @return The contents of the jar's fabric.mod.json, or null if it doesn't have one.
+		 */
+		byte[] getModJson() {
+			return modJson;
+		}
+
+		/**
+		 * @return The names of the jar's nested JARs in the {@link NestedJarStore}, or null if they aren't known yet.
+		 */
+		List<String> getNestedJars() {
+			return nestedJars;
+		}
+	}
+
+	private final Path file;
+	private final Map<String, Entry> previous;
+	private final Map<String, Entry> current = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	private ModDiscoveryIndex(Path file, Map<String, Entry> previous) {
+		this.file = file;
+		this.previous = previous;
+	}
+
+	static ModDiscoveryIndex load(Logger logger, Path file) {
+		Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+		if (Files.isRegularFile(file)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION) {
+					for (int i = in.readInt(); i > 0; i--) {
+						String path = in.readUTF();
+						long size = in.readLong();
+						long lastModified = in.readLong();
+						byte[] hash = new byte[in.readUnsignedByte()];
+						in.readFully(hash);
+						int jsonLength = in.readInt();
+						byte[] modJson = null;
+
+						if (jsonLength >= 0) {
+							modJson = new byte[jsonLength];
+							in.readFully(modJson);
+						}
+
+						List<String> nestedJars = null;
+						int nestedCount = in.readInt();
+
+						if (nestedCount >= 0) {
+							nestedJars = new ArrayList<>(nestedCount);
+							for (int j = 0; j < nestedCount; j++) {
+								nestedJars.add(in.readUTF());
+							}
+						}
+
+						entries.put(path, new Entry(size, lastModified, hash, modJson, nestedJars));
+					}
+				}
+			} catch (IOException e) {
+				logger.debug("Failed to read mod discovery index, all mods will be scanned", e);
+				entries.clear();
+			}
+		}
+
+		return new ModDiscoveryIndex(file, entries);
+	}
+
+	static boolean canIndex(Path jar) {
+		return jar.getFileSystem() == FileSystems.getDefault();
+	}
+
+	/**
+	 * @return The indexed state of the given jar, or null if it has changed or was never seen before.
+	 */
+	Entry get(Path jar) throws IOException {
+		String key = jar.toAbsolutePath().toString();
+		Entry entry = current.get(key);
+		if (entry != null) return entry;
+
+		entry = previous.get(key);
+		if (entry == null) return null;
+
+		BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+
+		if (attributes.size() != entry.size) {
+			return null;
+		} else if (lastModified != entry.lastModified) {
+			if (!Arrays.equals(HashUtil.hash(jar), entry.hash)) return null;
+
+			entry = new Entry(entry.size, lastModified, entry.hash, entry.modJson, entry.nestedJars);
+			dirty = true;
+		}
+
+		current.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Records the fabric.mod.json of a jar which just had to be opened.
+	 */
+	void put(Path jar, byte[] modJson) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		current.put(jar.toAbsolutePath().toString(), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), HashUtil.hash(jar), modJson, null));
+		dirty = true;
+	}
+
+	/**
+	 * Records where an indexed jar's nested JARs were extracted to.
+	 */
+	void putNestedJars(Path jar, List<String> nestedJars) {
+		current.computeIfPresent(jar.toAbsolutePath().toString(), (key, entry) -> new Entry(entry.size, entry.lastModified, entry.hash, entry.modJson, nestedJars));
+		dirty = true;
+	}
+
+	/**
+	 * Keeps every jar from the previous launch which wasn't seen this time in the index too, other than the given
+	 * ones, for when only those jars were scanned again.
+	 */
+	void retainPrevious(Collection<Path> changed) {
+		Set<String> skip = new HashSet<>();
+
+		for (Path jar : changed) {
+			skip.add(jar.toAbsolutePath().toString());
+		}
+
+		for (Map.Entry<String, Entry> e : previous.entrySet()) {
+			if (!skip.contains(e.getKey())) current.putIfAbsent(e.getKey(), e.getValue());
+		}
+	}
+
+	void save(Logger logger) {
+		if (!dirty && current.size() == previous.size()) return;
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(file.getParent());
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(current.size());
+
+				for (Map.Entry<String, Entry> e : current.entrySet()) {
+					Entry entry = e.getValue();
+					out.writeUTF(e.getKey());
+					out.writeLong(entry.size);
+					out.writeLong(entry.lastModified);
+					out.writeByte(entry.hash.length);
+					out.write(entry.hash);
+
+					if (entry.modJson != null) {
+						out.writeInt(entry.modJson.length);
+						out.write(entry.modJson);
+					} else {
+						out.writeInt(-1);
+					}
+
+					if (entry.nestedJars != null) {
+						out.writeInt(entry.nestedJars.size());
+
+						for (String nestedJar : entry.nestedJars) {
+							out.writeUTF(nestedJar);
+						}
+					} else {
+						out.writeInt(-1);
+					}
+				}
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.debug("Failed to save mod discovery index", e);
+		}
+	}
+}
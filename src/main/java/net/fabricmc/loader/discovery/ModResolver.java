@@ -17,14 +17,12 @@
 package net.fabricmc.loader.discovery;
 
 import com.google.common.base.Joiner;
-import com.google.common.jimfs.Configuration;
-import com.google.common.jimfs.Jimfs;
-import com.google.common.jimfs.PathType;
 import com.google.gson.*;
 import net.fabricmc.loader.FabricLoader;
 import net.fabricmc.loader.api.metadata.ModDependency;
 import net.fabricmc.loader.api.Version;
 import net.fabricmc.loader.launch.common.FabricLauncherBase;
+import net.fabricmc.loader.metadata.CompiledModDependency;
 import net.fabricmc.loader.metadata.LoaderModMetadata;
 import net.fabricmc.loader.metadata.ModMetadataParser;
 import net.fabricmc.loader.metadata.ModMetadataV0;
@@ -32,49 +30,41 @@ import net.fabricmc.loader.metadata.NestedJarEntry;
 import net.fabricmc.loader.util.FileSystemUtil;
 import net.fabricmc.loader.util.UrlConversionException;
 import net.fabricmc.loader.util.UrlUtil;
+import net.fabricmc.loader.util.ZipDirectory;
 import net.fabricmc.loader.util.sat4j.core.VecInt;
 import net.fabricmc.loader.util.sat4j.minisat.SolverFactory;
 import net.fabricmc.loader.util.sat4j.specs.ContradictionException;
-import net.fabricmc.loader.util.sat4j.specs.IProblem;
 import net.fabricmc.loader.util.sat4j.specs.ISolver;
 import net.fabricmc.loader.util.sat4j.specs.IVecInt;
 import net.fabricmc.loader.util.sat4j.specs.TimeoutException;
 import net.fabricmc.loader.util.version.VersionDeserializer;
+import net.fabricmc.loader.util.version.VersionIntervalSet;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static com.google.common.jimfs.Feature.FILE_CHANNEL;
-import static com.google.common.jimfs.Feature.SECURE_DIRECTORY_STREAM;
-
 public class ModResolver {
-	// nested JAR store
-	private static final FileSystem inMemoryFs = Jimfs.newFileSystem(
-		"nestedJarStore",
-		Configuration.builder(PathType.unix())
-			.setRoots("/")
-			.setWorkingDirectory("/")
-			.setAttributeViews("basic")
-			.setSupportedFeatures(SECURE_DIRECTORY_STREAM, FILE_CHANNEL)
-			.build()
-	);
-	private static final Map<URL, List<Path>> inMemoryCache = new ConcurrentHashMap<>();
+	private static final Map<URL, List<Path>> nestedJarCache = new ConcurrentHashMap<>();
 	private static final Pattern MOD_ID_PATTERN = Pattern.compile("[a-z][a-z0-9-_]{1,63}");
 	private static final Object launcherSyncObject = new Object();
 
 	private final List<ModCandidateFinder> candidateFinders = new ArrayList<>();
+	private Map<URL, Queue<ModCandidate>> candidatesByRoot;
 
 	public ModResolver() {
 	}
@@ -101,6 +91,180 @@ public class ModResolver {
 		}
 	}
 
+	private static final class Requirement {
+		private final String description;
+		private final List<int[]> clauses = new ArrayList<>();
+
+		private Requirement(ModCandidate mod, String type, ModDependency dependency) {
+			this.description = "Mod " + mod.getInfo().getId() + " " + mod.getInfo().getVersion().getFriendlyString() + " " + type + " " + dependency;
+		}
+	}
+
+	/**
+	 * A mod's candidates sorted by their packed version keys, so the ones a dependency matches can be found by binary
+	 * search rather than by testing every one.
+	 */
+	private static final class CandidateIndex {
+		private final List<ModCandidate> keyed = new ArrayList<>();
+		private final List<ModCandidate> unkeyed = new ArrayList<>();
+		private final long[] keys;
+		private final int[] vars;
+
+		CandidateIndex(Collection<ModCandidate> candidates, Map<ModCandidate, Integer> candidateIntMap) {
+			for (ModCandidate candidate : candidates) {
+				if (VersionIntervalSet.getKey(candidate.getInfo().getVersion()) != VersionIntervalSet.NO_KEY) {
+					keyed.add(candidate);
+				} else {
+					unkeyed.add(candidate);
+				}
+			}
+
+			keyed.sort(Comparator.comparingLong((c) -> VersionIntervalSet.getKey(c.getInfo().getVersion())));
+			keys = new long[keyed.size()];
+			vars = new int[keyed.size()];
+
+			for (int i = 0; i < keyed.size(); i++) {
+				keys[i] = VersionIntervalSet.getKey(keyed.get(i).getInfo().getVersion());
+				vars[i] = candidateIntMap.get(keyed.get(i));
+			}
+		}
+
+		int[] getMatching(ModDependency dependency, Map<ModCandidate, Integer> candidateIntMap) {
+			VersionIntervalSet intervals = dependency instanceof CompiledModDependency ? ((CompiledModDependency) dependency).getVersionIntervals() : null;
+			IntStream matching;
+
+			if (intervals != null) {
+				IntStream.Builder builder = IntStream.builder();
+
+				for (int i = 0; i < intervals.getIntervalCount(); i++) {
+					int pos = Arrays.binarySearch(keys, intervals.getLowerBound(i));
+
+					if (pos < 0) {
+						pos = -pos - 1;
+					} else {
+						// Several versions can share a key, such as 1.2 and 1.2.0
+						while (pos > 0 && keys[pos - 1] == keys[pos]) pos--;
+					}
+
+					for (; pos < keys.length && keys[pos] <= intervals.getUpperBound(i); pos++) {
+						builder.add(vars[pos]);
+					}
+				}
+
+				matching = builder.build();
+			} else {
+				matching = IntStream.range(0, keys.length).filter((i) -> dependency.matches(keyed.get(i).getInfo().getVersion())).map((i) -> vars[i]);
+			}
+
+			return IntStream.concat(matching, unkeyed.stream().filter((c) -> dependency.matches(c.getInfo().getVersion())).mapToInt(candidateIntMap::get)).toArray();
+		}
+	}
+
+	private static int[] getMatchingCandidates(ModDependency dependency, Map<String, CandidateIndex> candidateIndexes, Map<ModCandidate, Integer> candidateIntMap) {
+		CandidateIndex index = candidateIndexes.get(dependency.getModId());
+		return index != null ? index.getMatching(dependency, candidateIntMap) : new int[0];
+	}
+
+	private static void addVersionConstraints(ISolver solver, Map<String, Collection<ModCandidate>> modCandidateMap, Map<ModCandidate, Integer> candidateIntMap, Set<String> mandatoryMods) throws ModResolutionException {
+		// Each mod needs to have at most one version.
+		for (String id : modCandidateMap.keySet()) {
+			IVecInt versionVec = toVecInt(modCandidateMap.get(id).stream().mapToInt(candidateIntMap::get));
+
+			try {
+				if (mandatoryMods.contains(id)) {
+					solver.addExactly(versionVec, 1);
+				} else {
+					solver.addAtMost(versionVec, 1);
+				}
+			} catch (ContradictionException e) {
+				throw new ModResolutionException("Could not resolve valid mod collection (at: adding mod " + id + ")", e);
+			}
+		}
+	}
+
+	/**
+	 * Adds the clauses of every requirement, each switched on by its own selector variable (counting up from
+	 * {@code firstSelector}) if one is given, so that the solver can explain any conflict in terms of them.
+	 */
+	private static void addRequirements(ISolver solver, List<Requirement> requirements, int firstSelector) throws ContradictionException {
+		for (int i = 0; i < requirements.size(); i++) {
+			for (int[] clause : requirements.get(i).clauses) {
+				if (firstSelector > 0) {
+					clause = Arrays.copyOf(clause, clause.length + 1);
+					clause[clause.length - 1] = -(firstSelector + i);
+				}
+
+				solver.addClause(new VecInt(clause));
+			}
+		}
+	}
+
+	/**
+	 * Finds a set of requirements which can't all be satisfied together, but could be without any one of them.
+	 *
+	 * @return The conflicting requirements, one per line, or an empty string if they don't conflict.
+	 */
+	private static String explainConflict(Map<String, Collection<ModCandidate>> modCandidateMap, Map<ModCandidate, Integer> candidateIntMap, Set<String> mandatoryMods, List<Requirement> requirements, int firstSelector) throws ModResolutionException, TimeoutException {
+		ISolver solver = SolverFactory.newLight();
+		solver.newVar(firstSelector + requirements.size());
+		addVersionConstraints(solver, modCandidateMap, candidateIntMap, mandatoryMods);
+
+		try {
+			addRequirements(solver, requirements, firstSelector);
+		} catch (ContradictionException e) {
+			// Can't happen while every clause has an unassigned selector in it
+			return "";
+		}
+
+		if (solver.isSatisfiable(toVecInt(IntStream.range(firstSelector, firstSelector + requirements.size())))) {
+			return "";
+		}
+
+		IVecInt explanation = solver.unsatExplanation();
+		List<Integer> conflict = new ArrayList<>();
+
+		if (explanation != null) {
+			for (int i = 0; i < explanation.size(); i++) {
+				conflict.add(Math.abs(explanation.get(i)));
+			}
+		} else {
+			for (int i = 0; i < requirements.size(); i++) {
+				conflict.add(firstSelector + i);
+			}
+		}
+
+		for (int i = 0; i < conflict.size(); ) {
+			List<Integer> without = new ArrayList<>(conflict);
+			without.remove(i);
+
+			if (solver.isSatisfiable(toVecInt(without.stream().mapToInt(Integer::intValue)))) {
+				i++;
+			} else {
+				conflict = without;
+			}
+		}
+
+		StringBuilder out = new StringBuilder();
+
+		for (int selector : conflict) {
+			out.append("\n - ").append(requirements.get(selector - firstSelector).description);
+		}
+
+		return out.toString();
+	}
+
+	private static IVecInt toAssumptions(int[] choices, int count) {
+		IVecInt assumptions = new VecInt(count);
+
+		for (int i = 0; i < count; i++) {
+			if (choices[i] != 0) {
+				assumptions.push(choices[i]);
+			}
+		}
+
+		return assumptions;
+	}
+
 	// TODO: Find a way to sort versions of mods by suggestions and conflicts (not crucial, though)
 	public Map<String, ModCandidate> findCompatibleSet(Logger logger, Map<String, ModCandidateSet> modCandidateSetMap) throws ModResolutionException {
 		// First, map all ModCandidateSets to Set<ModCandidate>s.
@@ -127,7 +291,6 @@ public class ModResolver {
 			}
 		} else {
 			// Inspired by http://0install.net/solver.html
-			// probably also horrendously slow, for now
 
 			// Map all the ModCandidates to DIMACS-format positive integers.
 			int varCount = 1;
@@ -141,102 +304,109 @@ public class ModResolver {
 				}
 			}
 
-			ISolver solver = SolverFactory.newLight();
-			solver.newVar(varCount);
+			Map<String, CandidateIndex> candidateIndexes = new HashMap<>();
+			for (Map.Entry<String, Collection<ModCandidate>> entry : modCandidateMap.entrySet()) {
+				candidateIndexes.put(entry.getKey(), new CandidateIndex(entry.getValue(), candidateIntMap));
+			}
 
-			try {
-				// Each mod needs to have at most one version.
-				for (String id : modCandidateMap.keySet()) {
-					IVecInt versionVec = toVecInt(modCandidateMap.get(id).stream().mapToInt(candidateIntMap::get));
+			List<Requirement> requirements = new ArrayList<>();
 
-					try {
-						if (mandatoryMods.contains(id)) {
-							solver.addExactly(versionVec, 1);
-						} else {
-							solver.addAtMost(versionVec, 1);
-						}
-					} catch (ContradictionException e) {
-						throw new ModResolutionException("Could not resolve valid mod collection (at: adding mod " + id + ")", e);
-					}
-				}
+			for (ModCandidate mod : candidateIntMap.keySet()) {
+				int modClauseId = candidateIntMap.get(mod);
 
-				for (ModCandidate mod : candidateIntMap.keySet()) {
-					int modClauseId = candidateIntMap.get(mod);
+				// Each mod's requirements must be satisfied, if it is to be present.
+				// mod => ((a or b) AND (d or e))
+				// \> not mod OR ((a or b) AND (d or e))
+				// \> ((not mod OR a OR b) AND (not mod OR d OR e))
 
-					// Each mod's requirements must be satisfied, if it is to be present.
-					// mod => ((a or b) AND (d or e))
-					// \> not mod OR ((a or b) AND (d or e))
-					// \> ((not mod OR a OR b) AND (not mod OR d OR e))
+				for (ModDependency dep : mod.getInfo().getDepends()) {
+					int[] matchingCandidates = getMatchingCandidates(dep, candidateIndexes, candidateIntMap);
 
-					for (ModDependency dep : mod.getInfo().getDepends()) {
-						int[] matchingCandidates = modCandidateMap.getOrDefault(dep.getModId(), Collections.emptyList())
-							.stream()
-							.filter((c) -> dep.matches(c.getInfo().getVersion()))
-							.mapToInt(candidateIntMap::get)
-							.toArray();
+					int[] clause = new int[matchingCandidates.length + 1];
+					System.arraycopy(matchingCandidates, 0, clause, 0, matchingCandidates.length);
+					clause[matchingCandidates.length] = -modClauseId;
 
-						int[] clause = new int[matchingCandidates.length + 1];
-						System.arraycopy(matchingCandidates, 0, clause, 0, matchingCandidates.length);
-						clause[matchingCandidates.length] = -modClauseId;
+					Requirement requirement = new Requirement(mod, "requires", dep);
+					requirement.clauses.add(clause);
+					requirements.add(requirement);
+				}
 
-						try {
-							solver.addClause(new VecInt(clause));
-						} catch (ContradictionException e) {
-							throw new ModResolutionException("Could not resolve valid mod collection (at: " + mod.getInfo().getId() + " requires " + dep + ")", e);
-						}
+				// Each mod's breaks must be NOT satisfied, if it is to be present.
+				// mod => (not a AND not b AND not d AND not e))
+				// \> not mod OR (not a AND not b AND not d AND not e)
+				// \> (not mod OR not a) AND (not mod OR not b) ...
+
+				for (ModDependency dep : mod.getInfo().getBreaks()) {
+					Requirement requirement = new Requirement(mod, "breaks", dep);
+
+					for (int m : getMatchingCandidates(dep, candidateIndexes, candidateIntMap)) {
+						requirement.clauses.add(new int[] { -modClauseId, -m });
 					}
 
-					// Each mod's breaks must be NOT satisfied, if it is to be present.
-					// mod => (not a AND not b AND not d AND not e))
-					// \> not mod OR (not a AND not b AND not d AND not e)
-					// \> (not mod OR not a) AND (not mod OR not b) ...
+					requirements.add(requirement);
+				}
+			}
 
-					for (ModDependency dep : mod.getInfo().getBreaks()) {
-						int[] matchingCandidates = modCandidateMap.getOrDefault(dep.getModId(), Collections.emptyList())
-							.stream()
-							.filter((c) -> dep.matches(c.getInfo().getVersion()))
-							.mapToInt(candidateIntMap::get)
-							.toArray();
+			// The solver is reused for every check below, keeping what it learns from one to the next.
+			ISolver solver = SolverFactory.newLight();
+			solver.newVar(varCount);
 
-						try {
-							for (int m : matchingCandidates) {
-								solver.addClause(new VecInt(new int[] { -modClauseId, -m }));
-							}
-						} catch (ContradictionException e) {
-							throw new ModResolutionException("Could not resolve valid mod collection (at: " + mod.getInfo().getId() + " breaks " + dep + ")", e);
-						}
-					}
+			try {
+				addVersionConstraints(solver, modCandidateMap, candidateIntMap, mandatoryMods);
+				boolean satisfiable;
+
+				try {
+					addRequirements(solver, requirements, 0);
+					satisfiable = solver.isSatisfiable();
+				} catch (ContradictionException e) {
+					satisfiable = false;
+				}
+
+				if (!satisfiable) {
+					String conflict = explainConflict(modCandidateMap, candidateIntMap, mandatoryMods, requirements, varCount);
+					throw new ModResolutionException("Could not resolve valid mod collection" + (conflict.isEmpty() ? "" : ", as these requirements can't all be satisfied:" + conflict));
 				}
 
-				//noinspection UnnecessaryLocalVariable
-				IProblem problem = solver;
-				IVecInt assumptions = new VecInt(modCandidateMap.size());
-
-				for (String mod : modCandidateMap.keySet()) {
-					int pos = assumptions.size();
-					assumptions = assumptions.push(0);
-					Collection<ModCandidate> candidates = modCandidateMap.get(mod);
-					boolean satisfied = false;
-
-					for (ModCandidate candidate : candidates) {
-						assumptions.set(pos, candidateIntMap.get(candidate));
-						if (problem.isSatisfiable(assumptions)) {
-							satisfied = true;
-							break;
+				// Pick each mod's most preferred candidate (newest, then shallowest) in turn, provided it fits with the
+				// picks before it. Rather than checking every pick separately, first assume every mod gets its first
+				// choice at once, which usually works. Otherwise, every pick the last solution found already agrees
+				// with is known to fit, so only the ones it doesn't need checking.
+				List<String> modIds = new ArrayList<>(modCandidateMap.keySet());
+				int[] choices = new int[modIds.size()];
+
+				for (int i = 0; i < modIds.size(); i++) {
+					choices[i] = candidateIntMap.get(modCandidateMap.get(modIds.get(i)).iterator().next());
+				}
+
+				if (!solver.isSatisfiable(toAssumptions(choices, choices.length))) {
+					// Start again from a solution without any picks
+					solver.isSatisfiable();
+
+					for (int i = 0; i < modIds.size(); i++) {
+						String mod = modIds.get(i);
+						Iterator<ModCandidate> candidates = modCandidateMap.get(mod).iterator();
+						choices[i] = candidateIntMap.get(candidates.next());
+
+						if (solver.model(choices[i])) {
+							continue;
 						}
-					}
 
-					if (!satisfied) {
-						if (mandatoryMods.contains(mod)) {
-							throw new ModResolutionException("Could not resolve mod collection including mandatory mod '" + mod + "'");
-						} else {
-							assumptions = assumptions.pop();
+						while (!solver.isSatisfiable(toAssumptions(choices, i + 1))) {
+							if (candidates.hasNext()) {
+								choices[i] = candidateIntMap.get(candidates.next());
+							} else if (mandatoryMods.contains(mod)) {
+								throw new ModResolutionException("Could not resolve mod collection including mandatory mod '" + mod + "'");
+							} else {
+								choices[i] = 0;
+								// Find a model for the picks so far again
+								solver.isSatisfiable(toAssumptions(choices, i));
+								break;
+							}
 						}
 					}
 				}
 
-				// assume satisfied
-				int[] model = problem.model();
+				int[] model = solver.model();
 				result = new HashMap<>();
 
 				for (int i : model) {
@@ -256,11 +426,20 @@ public class ModResolver {
 			}
 		}
 
+		verifyResult(logger, modCandidateSetMap, result);
+		return result;
+	}
+
+	/**
+	 * Checks that every mandatory mod was picked and that the picked mods' dependencies are met, failing if anything
+	 * they need is missing or anything they break is present.
+	 */
+	private void verifyResult(Logger logger, Map<String, ModCandidateSet> modCandidateSetMap, Map<String, ModCandidate> result) throws ModResolutionException {
 		// verify result: all mandatory mods
 		Set<String> missingMods = new HashSet<>();
-		for (String m : mandatoryMods) {
-			if (!result.keySet().contains(m)) {
-				missingMods.add(m);
+		for (ModCandidateSet mcs : modCandidateSetMap.values()) {
+			if (mcs.isUserProvided() && !result.keySet().contains(mcs.getModId())) {
+				missingMods.add(mcs.getModId());
 			}
 		}
 
@@ -298,28 +477,188 @@ public class ModResolver {
 		} else if (!errSoftStr.isEmpty()) {
 			logger.warn("Non-mandatory unsatisfied dependencies! " + errSoftStr);
 		}
+	}
 
-		return result;
+	/**
+	 * Tracks the discovery of mods for a single {@link #resolve} call, which runs on a pool shared between calls.
+	 *
+	 * <p>The first failure cancels every action which hasn't started yet. Discovery times out once no mod has finished
+	 * being scanned for {@code -Dfabric.loader.discoveryTimeout} seconds (30 by default, 0 to wait forever), rather than
+	 * after a fixed time overall, so a slow disk only fails it if it stalls completely.</p>
+	 */
+	static final class Discovery {
+		private static ForkJoinPool pool;
+
+		final FabricLoader loader;
+		final Map<String, ModCandidateSet> candidatesById = new ConcurrentHashMap<>();
+		/** Every candidate found, keyed by the submitted mod it was found in (or nested inside of). */
+		final Map<URL, Queue<ModCandidate>> candidatesByRoot = new ConcurrentHashMap<>();
+		final ModDiscoveryIndex index;
+		final NestedJarStore nestedJarStore;
+		/** Whether to open jars separately from any file system already open for them, which might be out of date. */
+		boolean privateJarFileSystems;
+		private final BlockingQueue<UrlProcessAction> finished = new LinkedBlockingQueue<>();
+		private final Set<URL> running = ConcurrentHashMap.newKeySet();
+		private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+		private volatile boolean cancelled;
+		private volatile long lastProgress = System.nanoTime();
+		private final AtomicInteger started = new AtomicInteger();
+
+		Discovery(FabricLoader loader, ModDiscoveryIndex index, NestedJarStore nestedJarStore) {
+			this.loader = loader;
+			this.index = index;
+			this.nestedJarStore = nestedJarStore;
+		}
+
+		private static synchronized ForkJoinPool getPool() {
+			if (pool == null) {
+				// Mostly waiting on I/O, so more threads than cores can help with slow (such as network) drives
+				pool = new ForkJoinPool(Math.max(1, Integer.getInteger("fabric.loader.discoveryThreads", Runtime.getRuntime().availableProcessors() - 1)));
+			}
+
+			return pool;
+		}
+
+		void submit(URL url) {
+			started.incrementAndGet();
+			getPool().execute(new UrlProcessAction(this, url, url, 0, null));
+		}
+
+		void fail(Throwable t) {
+			failures.add(t);
+			cancelled = true;
+		}
+
+		/**
+		 * Waits for every submitted mod, and the mods nested in them, to be scanned.
+		 */
+		void await() {
+			long timeout = TimeUnit.SECONDS.toNanos(Long.getLong("fabric.loader.discoveryTimeout", 30));
+
+			try {
+				for (int done = 0; done < started.get() && failures.isEmpty(); ) {
+					if (timeout <= 0) {
+						finished.take();
+						done++;
+						continue;
+					}
+
+					long remaining = lastProgress + timeout - System.nanoTime();
+
+					if (remaining > 0 && finished.poll(remaining, TimeUnit.NANOSECONDS) != null) {
+						done++;
+					} else if (System.nanoTime() - lastProgress >= timeout) {
+						cancelled = true;
+						throw new RuntimeException("Mod discovery took too long! Still scanning: " + running);
+					}
+				}
+			} catch (InterruptedException e) {
+				cancelled = true;
+				throw new RuntimeException("Interrupted while discovering mods!", e);
+			}
+
+			if (!failures.isEmpty()) {
+				Throwable exception = failures.get(0);
+
+				for (int i = 1; i < failures.size(); i++) {
+					exception.addSuppressed(failures.get(i));
+				}
+
+				throw new RuntimeException("Mod resolution failed!", exception);
+			}
+		}
 	}
 
 	static class UrlProcessAction extends RecursiveAction {
+		/** Marks a JAR which was checked and found to have no fabric.mod.json. */
+		private static final byte[] NO_MOD_JSON = new byte[0];
+
+		private final Discovery discovery;
 		private final FabricLoader loader;
 		private final Map<String, ModCandidateSet> candidatesById;
-		private final URL url;
+		private final ModDiscoveryIndex index;
+		private final NestedJarStore nestedJarStore;
+		private final URL root, url;
 		private final int depth;
-
-		UrlProcessAction(FabricLoader loader, Map<String, ModCandidateSet> candidatesById, URL url, int depth) {
-			this.loader = loader;
-			this.candidatesById = candidatesById;
+		/** The mod's fabric.mod.json if it was already read while checking whether it's a mod, else null. */
+		private final byte[] knownModJson;
+		private FileSystem privateJarFileSystem;
+
+		UrlProcessAction(Discovery discovery, URL root, URL url, int depth, byte[] knownModJson) {
+			this.discovery = discovery;
+			this.loader = discovery.loader;
+			this.candidatesById = discovery.candidatesById;
+			this.index = discovery.index;
+			this.nestedJarStore = discovery.nestedJarStore;
+			this.root = root;
 			this.url = url;
 			this.depth = depth;
+			this.knownModJson = knownModJson;
+		}
+
+		private Path openJar(Path path) {
+			try {
+				if (discovery.privateJarFileSystems) {
+					if (privateJarFileSystem == null) {
+						privateJarFileSystem = FileSystems.newFileSystem(path, (ClassLoader) null);
+					}
+
+					return privateJarFileSystem.getRootDirectories().iterator().next();
+				}
+
+				return FileSystemUtil.getJarFileSystem(path, false).get().getRootDirectories().iterator().next();
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to open mod JAR at " + path + "!");
+			}
 		}
 
 		@Override
 		protected void compute() {
-			FileSystemUtil.FileSystemDelegate jarFs;
-			Path path, modJson, rootDir;
+			try {
+				if (discovery.cancelled) return;
+
+				List<UrlProcessAction> nested;
+				long start = System.nanoTime();
+				discovery.running.add(url);
+
+				try {
+					nested = process();
+				} catch (RuntimeException | Error e) {
+					discovery.fail(e);
+					throw e;
+				} finally {
+					discovery.running.remove(url);
+					discovery.lastProgress = System.nanoTime();
+
+					if (privateJarFileSystem != null) {
+						try {
+							privateJarFileSystem.close();
+						} catch (IOException e) {
+							loader.getLogger().debug("Failed to close " + url, e);
+						}
+					}
+				}
+
+				loader.getLogger().debug("Scanned %s in %.1f ms", url, (System.nanoTime() - start) / 1e6);
+
+				// Any failure in here has already been recorded by the nested action
+				if (!nested.isEmpty() && !discovery.cancelled) {
+					invokeAll(nested);
+				}
+			} finally {
+				if (depth == 0) {
+					discovery.finished.add(this);
+				}
+			}
+		}
+
+		/**
+		 * @return The actions for any nested JARs found which still need scanning.
+		 */
+		private List<UrlProcessAction> process() {
+			Path path, rootDir;
 			URL normalizedUrl;
+			List<UrlProcessAction> nested = new ArrayList<>();
 
 			loader.getLogger().debug("Testing " + url);
 
@@ -331,40 +670,76 @@ public class ModResolver {
 				throw new RuntimeException("Failed to convert URL " + url + "!", e);
 			}
 
+			byte[] modJson;
+			ModDiscoveryIndex.Entry indexed = null;
+			boolean canIndex = false;
+
 			if (Files.isDirectory(path)) {
 				// Directory
-				modJson = path.resolve("fabric.mod.json");
 				rootDir = path;
 
-				if (loader.isDevelopmentEnvironment() && !Files.exists(modJson)) {
+				if (loader.isDevelopmentEnvironment() && !Files.exists(path.resolve("fabric.mod.json"))) {
 					loader.getLogger().warn("Adding directory " + path + " to mod classpath in development environment - workaround for Gradle splitting mods into two directories");
 					synchronized (launcherSyncObject) {
 						FabricLauncherBase.getLauncher().propose(url);
 					}
 				}
+
+				modJson = readModJson(path, rootDir);
 			} else {
 				// JAR file
-				try {
-					jarFs = FileSystemUtil.getJarFileSystem(path, false);
-					modJson = jarFs.get().getPath("fabric.mod.json");
-					rootDir = jarFs.get().getRootDirectories().iterator().next();
-				} catch (IOException e) {
-					throw new RuntimeException("Failed to open mod JAR at " + path + "!");
+				canIndex = index != null && ModDiscoveryIndex.canIndex(path);
+
+				if (canIndex) {
+					try {
+						indexed = index.get(path);
+					} catch (IOException e) {
+						loader.getLogger().debug("Failed to check " + path + " against the discovery index", e);
+					}
+				}
+
+				// Only opened if there turn out to be nested JARs to extract
+				rootDir = null;
+
+				if (indexed != null) {
+					modJson = indexed.getModJson();
+				} else {
+					modJson = knownModJson != null ? knownModJson : checkJar(path);
+
+					if (modJson == null) {
+						rootDir = openJar(path);
+						modJson = readModJson(path, rootDir);
+					} else if (modJson == NO_MOD_JSON) {
+						modJson = null;
+					}
+
+					if (canIndex) {
+						try {
+							index.put(path, modJson);
+						} catch (IOException e) {
+							loader.getLogger().debug("Failed to add " + path + " to the discovery index", e);
+						}
+					}
 				}
 			}
 
 			LoaderModMetadata[] info;
 
-			try (InputStream stream = Files.newInputStream(modJson)) {
-				info = ModMetadataParser.getMods(loader, stream);
-			} catch (JsonSyntaxException e) {
-				throw new RuntimeException("Mod at '" + path + "' has an invalid fabric.mod.json file!", e);
-			} catch (NoSuchFileException e) {
+			if (modJson == null) {
 				info = new LoaderModMetadata[0];
-			} catch (IOException e) {
-				throw new RuntimeException("Failed to open fabric.mod.json for mod at '" + path + "'!", e);
+			} else {
+				try {
+					info = ModMetadataParser.getMods(loader, modJson);
+				} catch (JsonParseException e) {
+					throw new RuntimeException("Mod at '" + path + "' has an invalid fabric.mod.json file!", e);
+				}
 			}
 
+			Path fRootDir = rootDir;
+			ModDiscoveryIndex.Entry fIndexed = indexed;
+			boolean fCanIndex = canIndex;
+			Map<Path, byte[]> nestedModJsons = new HashMap<>();
+
 			for (LoaderModMetadata i : info) {
 				ModCandidate candidate = new ModCandidate(i, normalizedUrl, depth);
 				boolean added;
@@ -381,6 +756,7 @@ public class ModResolver {
 					loader.getLogger().warn("Mod ID " + candidate.getInfo().getId() + " uses outdated schema version: " + candidate.getInfo().getSchemaVersion() + " < " + ModMetadataParser.LATEST_VERSION);
 				}
 
+				discovery.candidatesByRoot.computeIfAbsent(root, (u) -> new ConcurrentLinkedQueue<>()).add(candidate);
 				added = candidatesById.computeIfAbsent(candidate.getInfo().getId(), ModCandidateSet::new).add(candidate);
 
 				if (!added) {
@@ -388,43 +764,89 @@ public class ModResolver {
 				} else {
 					loader.getLogger().debug("Adding " + candidate.getOriginUrl() + " as " + candidate);
 
-					List<Path> jarInJars = inMemoryCache.computeIfAbsent(candidate.getOriginUrl(), (u) -> {
+					List<Path> jarInJars = nestedJarCache.computeIfAbsent(candidate.getOriginUrl(), (u) -> {
 						loader.getLogger().debug("Searching for nested JARs in " + candidate);
 						Collection<NestedJarEntry> jars = candidate.getInfo().getJars();
+						if (jars.isEmpty()) return Collections.emptyList();
+
+						List<Path> stored = fIndexed != null ? getStoredNestedJars(fIndexed) : null;
+						if (stored != null) return stored;
+
+						Path jarRoot = fRootDir != null ? fRootDir : openJar(path);
 						List<Path> list = new ArrayList<>(jars.size());
+						SeekableByteChannel channel = null;
+						ZipDirectory directory = null;
+
+						if (!Files.isDirectory(path)) {
+							try {
+								channel = Files.newByteChannel(path);
+								directory = ZipDirectory.read(channel, 0, channel.size(), jars.stream().map(NestedJarEntry::getFile).collect(Collectors.toSet()));
+							} catch (IOException e) {
+								loader.getLogger().debug("Failed to read the central directory of " + path + ", nested JARs will be extracted unchecked", e);
+							}
+						}
 
-						jars.stream()
-							.map((j) -> rootDir.resolve(j.getFile().replace("/", rootDir.getFileSystem().getSeparator())))
-							.forEach((modPath) -> {
-								if (!Files.isDirectory(modPath) && modPath.toString().endsWith(".jar")) {
-									// TODO: pre-check the JAR before loading it, if possible
-									loader.getLogger().debug("Found nested JAR: " + modPath);
-									Path dest = inMemoryFs.getPath(UUID.randomUUID() + ".jar");
-
-									try {
-										Files.copy(modPath, dest);
-									} catch (IOException e) {
-										throw new RuntimeException("Failed to load nested JAR " + modPath + " into memory (" + dest + ")!", e);
+						try {
+							for (NestedJarEntry j : jars) {
+								Path modPath = jarRoot.resolve(j.getFile().replace("/", jarRoot.getFileSystem().getSeparator()));
+								if (Files.isDirectory(modPath) || !modPath.toString().endsWith(".jar")) continue;
+
+								loader.getLogger().debug("Found nested JAR: " + modPath);
+								byte[] nestedModJson = checkNestedJar(directory, j.getFile(), modPath);
+
+								if (nestedModJson == NO_MOD_JSON) {
+									loader.getLogger().debug("Skipping nested JAR %s, as it has no fabric.mod.json", modPath);
+									continue;
+								}
+
+								Path extracted;
+
+								try {
+									extracted = nestedJarStore.extract(modPath);
+								} catch (IOException e) {
+									throw new RuntimeException("Failed to extract nested JAR " + modPath + "!", e);
+								}
+
+								if (nestedModJson == null) {
+									// Compressed inside the outer JAR, so it could only be checked once extracted
+									nestedModJson = checkJar(extracted);
+
+									if (nestedModJson == NO_MOD_JSON) {
+										loader.getLogger().debug("Skipping nested JAR %s, as it has no fabric.mod.json", modPath);
+										nestedJarStore.discard(extracted);
+										continue;
 									}
+								}
 
-									list.add(dest);
+								list.add(extracted);
+								if (nestedModJson != null) nestedModJsons.put(extracted, nestedModJson);
+							}
+						} finally {
+							if (channel != null) {
+								try {
+									channel.close();
+								} catch (IOException e) {
+									loader.getLogger().debug("Failed to close " + path, e);
 								}
-							});
+							}
+						}
+
+						if (fCanIndex) {
+							index.putNestedJars(path, list.stream().map((p) -> p.getFileName().toString()).collect(Collectors.toList()));
+						}
 
 						return list;
 					});
 
-					if (!jarInJars.isEmpty()) {
-						invokeAll(
-							jarInJars.stream()
-								.map((p) -> {
-									try {
-										return new UrlProcessAction(loader, candidatesById, UrlUtil.asUrl(p.normalize()), depth + 1);
-									} catch (UrlConversionException e) {
-										throw new RuntimeException("Failed to turn path '" + p.normalize() + "' into URL!", e);
-									}
-								}).collect(Collectors.toList())
-						);
+					for (Path p : jarInJars) {
+						// Taken from the cache when already resolved in this JVM, which doesn't go through the store
+						nestedJarStore.markUsed(p);
+
+						try {
+							nested.add(new UrlProcessAction(discovery, root, UrlUtil.asUrl(p.normalize()), depth + 1, nestedModJsons.get(p)));
+						} catch (UrlConversionException e) {
+							throw new RuntimeException("Failed to turn path '" + p.normalize() + "' into URL!", e);
+						}
 					}
 				}
 			}
@@ -432,55 +854,132 @@ public class ModResolver {
 			/* if (jarFs != null) {
 				jarFs.close();
 			} */
+
+			return nested;
 		}
-	}
 
-	public Map<String, ModCandidate> resolve(FabricLoader loader) throws ModResolutionException {
-		Map<String, ModCandidateSet> candidatesById = new ConcurrentHashMap<>();
+		/**
+		 * @return The nested JARs the index remembers extracting for the given jar, or null if any need extracting again.
+		 */
+		private List<Path> getStoredNestedJars(ModDiscoveryIndex.Entry indexed) {
+			List<String> names = indexed.getNestedJars();
+			if (names == null) return null;
 
-		long time1 = System.currentTimeMillis();
+			List<Path> list = new ArrayList<>(names.size());
 
-		Queue<UrlProcessAction> allActions = new ConcurrentLinkedQueue<>();
-		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
-		for (ModCandidateFinder f : candidateFinders) {
-			f.findCandidates(loader, (u) -> {
-				UrlProcessAction action = new UrlProcessAction(loader, candidatesById, u, 0);
-				allActions.add(action);
-				pool.execute(action);
-			});
+			for (String name : names) {
+				Path stored = nestedJarStore.get(name);
+				if (stored == null) return null;
+
+				list.add(stored);
+			}
+
+			return list;
 		}
 
-		boolean tookTooLong = false;
-		Throwable exception = null;
-		try {
-			pool.shutdown();
-			pool.awaitTermination(30, TimeUnit.SECONDS);
-			for (UrlProcessAction action : allActions) {
-				if (!action.isDone()) {
-					tookTooLong = true;
-				} else {
-					Throwable t = action.getException();
-					if (t != null) {
-						if (exception == null) {
-							exception = t;
-						} else {
-							exception.addSuppressed(t);
-						}
-					}
-				}
+		/**
+		 * @return The given JAR's fabric.mod.json, {@link #NO_MOD_JSON} if it has none, or null if it can't be checked.
+		 */
+		private byte[] checkJar(Path jar) {
+			try (SeekableByteChannel channel = Files.newByteChannel(jar)) {
+				return readModJson(channel, 0, channel.size());
+			} catch (IOException e) {
+				loader.getLogger().debug("Failed to read the central directory of " + jar + ", opening it instead", e);
+				return null;
 			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException("Mod resolution took too long!", e);
 		}
-		if (tookTooLong) {
-			throw new RuntimeException("Mod resolution took too long!");
+
+		/**
+		 * Checks a nested JAR without extracting it, which is only possible if the outer mod is a directory or the
+		 * nested JAR was stored in it uncompressed.
+		 *
+		 * @param outer The central directory of the outer mod, if it is a JAR which could be read.
+		 * @return The nested JAR's fabric.mod.json, {@link #NO_MOD_JSON} if it has none, or null if it can't be checked.
+		 */
+		private byte[] checkNestedJar(ZipDirectory outer, String name, Path nestedJar) {
+			if (outer == null) {
+				return nestedJar.getFileSystem() == FileSystems.getDefault() ? checkJar(nestedJar) : null;
+			}
+
+			ZipDirectory.Entry entry = outer.get(name);
+			if (entry == null || entry.method != ZipDirectory.STORED) return null;
+
+			try {
+				return readModJson(outer.getChannel(), outer.getDataOffset(entry), entry.size);
+			} catch (IOException e) {
+				loader.getLogger().debug("Failed to read the central directory of " + nestedJar + ", extracting it instead", e);
+				return null;
+			}
+		}
+
+		/**
+		 * @return The fabric.mod.json in the zip in the given part of the channel, or {@link #NO_MOD_JSON} if it has none.
+		 */
+		private static byte[] readModJson(SeekableByteChannel channel, long start, long length) throws IOException {
+			ZipDirectory directory = ZipDirectory.read(channel, start, length, Collections.singleton("fabric.mod.json"));
+			ZipDirectory.Entry entry = directory.get("fabric.mod.json");
+
+			return entry != null ? directory.readData(entry) : NO_MOD_JSON;
+		}
+
+		/**
+		 * @return The contents of the fabric.mod.json in the given mod, or null if there isn't one.
+		 */
+		private static byte[] readModJson(Path path, Path rootDir) {
+			try {
+				return Files.readAllBytes(rootDir.resolve("fabric.mod.json"));
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to open fabric.mod.json for mod at '" + path + "'!", e);
+			}
+		}
+	}
+
+	public Map<String, ModCandidate> resolve(FabricLoader loader) throws ModResolutionException {
+		long time1 = System.currentTimeMillis();
+
+		Path fabricDir = loader.getGameDirectory() != null ? loader.getGameDirectory().toPath().resolve(".fabric") : null;
+		ModDiscoveryIndex index = fabricDir != null ? ModDiscoveryIndex.load(loader.getLogger(), fabricDir.resolve("modIndex.bin")) : null;
+		NestedJarStore nestedJarStore = new NestedJarStore(loader.getLogger(), fabricDir != null ? fabricDir.resolve("nestedJars") : null);
+		Discovery discovery = new Discovery(loader, index, nestedJarStore);
+		Map<String, ModCandidateSet> candidatesById = discovery.candidatesById;
+
+		for (ModCandidateFinder f : candidateFinders) {
+			f.findCandidates(loader, discovery::submit);
 		}
-		if (exception != null) {
-			throw new RuntimeException("Mod resolution failed!", exception);
+
+		discovery.await();
+		candidatesByRoot = discovery.candidatesByRoot;
+
+		if (index != null) {
+			index.save(loader.getLogger());
 		}
 
+		nestedJarStore.removeUnused(loader.getLogger());
+
 		long time2 = System.currentTimeMillis();
-		Map<String, ModCandidate> result = findCompatibleSet(loader.getLogger(), candidatesById);
+		Map<String, ModCandidate> result = null;
+		Path snapshotFile = null;
+		byte[] fingerprint = null;
+
+		if (fabricDir != null) {
+			snapshotFile = fabricDir.resolve("resolution.bin");
+			fingerprint = ResolutionSnapshot.fingerprint(candidatesById);
+			result = ResolutionSnapshot.load(loader.getLogger(), snapshotFile, fingerprint, candidatesById);
+		}
+
+		if (result != null) {
+			// Same candidates as last time, so the same mods would be picked
+			loader.getLogger().debug("Reusing previous mod resolution");
+			verifyResult(loader.getLogger(), candidatesById, result);
+		} else {
+			result = findCompatibleSet(loader.getLogger(), candidatesById);
+
+			if (snapshotFile != null) {
+				ResolutionSnapshot.save(loader.getLogger(), snapshotFile, fingerprint, result);
+			}
+		}
 
 		long time3 = System.currentTimeMillis();
 		loader.getLogger().debug("Mod resolution detection time: " + (time2 - time1) + "ms");
@@ -488,4 +987,75 @@ public class ModResolver {
 
 		return result;
 	}
+
+	/**
+	 * Resolves mods again after some of the mods found by the last {@link #resolve} call were added, changed or
+	 * removed. Only the given mods are scanned again, everything else found last time is reused as it was (unless it
+	 * has since been deleted).
+	 *
+	 * @param changed The mods which have changed since they were last resolved, whether or not they still exist.
+	 */
+	public Map<String, ModCandidate> resolveChanged(FabricLoader loader, Collection<URL> changed) throws ModResolutionException {
+		if (candidatesByRoot == null) {
+			throw new IllegalStateException("Mods have not been resolved yet!");
+		}
+
+		Path fabricDir = loader.getGameDirectory() != null ? loader.getGameDirectory().toPath().resolve(".fabric") : null;
+		ModDiscoveryIndex index = fabricDir != null ? ModDiscoveryIndex.load(loader.getLogger(), fabricDir.resolve("modIndex.bin")) : null;
+		// Nothing is removed from the store here, as the nested JARs of the mods which weren't rescanned are still used
+		NestedJarStore nestedJarStore = new NestedJarStore(loader.getLogger(), fabricDir != null ? fabricDir.resolve("nestedJars") : null);
+		Discovery discovery = new Discovery(loader, index, nestedJarStore);
+		// The file systems opened for the jars last time won't have noticed them changing
+		discovery.privateJarFileSystems = true;
+		Set<URL> rescan = new HashSet<>();
+		List<Path> changedPaths = new ArrayList<>(changed.size());
+
+		for (URL url : changed) {
+			Path path = getPath(url);
+			nestedJarCache.remove(getUrl(path));
+			changedPaths.add(path);
+			if (Files.exists(path)) rescan.add(url);
+		}
+
+		for (Map.Entry<URL, Queue<ModCandidate>> entry : candidatesByRoot.entrySet()) {
+			if (changed.contains(entry.getKey()) || !Files.exists(getPath(entry.getKey()))) continue;
+
+			discovery.candidatesByRoot.put(entry.getKey(), entry.getValue());
+
+			for (ModCandidate candidate : entry.getValue()) {
+				discovery.candidatesById.computeIfAbsent(candidate.getInfo().getId(), ModCandidateSet::new).add(candidate);
+			}
+		}
+
+		for (URL url : rescan) {
+			discovery.submit(url);
+		}
+
+		discovery.await();
+		candidatesByRoot = discovery.candidatesByRoot;
+
+		if (index != null) {
+			// Only the changed mods were scanned, so everything else is as it was
+			index.retainPrevious(changedPaths);
+			index.save(loader.getLogger());
+		}
+
+		return findCompatibleSet(loader.getLogger(), discovery.candidatesById);
+	}
+
+	private static Path getPath(URL url) {
+		try {
+			return UrlUtil.asPath(url).normalize();
+		} catch (UrlConversionException e) {
+			throw new RuntimeException("Failed to convert URL " + url + "!", e);
+		}
+	}
+
+	private static URL getUrl(Path path) {
+		try {
+			return UrlUtil.asUrl(path);
+		} catch (UrlConversionException e) {
+			throw new RuntimeException("Failed to turn path '" + path + "' into URL!", e);
+		}
+	}
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.discovery;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.jimfs.PathType;
+import net.fabricmc.loader.util.HashUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.jimfs.Feature.FILE_CHANNEL;
+import static com.google.common.jimfs.Feature.SECURE_DIRECTORY_STREAM;
+
+/**
+ * Holds the JARs extracted from inside mods.
+ *
+ * <p>Extracted JARs are streamed to a directory on disk and named after the hash of their contents, so the same JAR
+ * nested in several mods is only stored once and later launches can reuse it. Only if there is no such directory (or it
+ * can't be written to) are they kept in memory instead.</p>
+ *
+ * <p>Other instances of the game can share the directory, so a stored JAR's modification time is updated whenever it
+ * is used, and only JARs which no instance has used for a while are removed.</p>
+ */
+class NestedJarStore {
+	private static FileSystem inMemoryFs;
+
+	private final Path directory;
+	private final boolean inMemory;
+	private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+	NestedJarStore(Logger logger, Path directory) {
+		if (directory != null) {
+			try {
+				Files.createDirectories(directory);
+			} catch (IOException e) {
+				logger.warn("Unable to create nested JAR store at " + directory + ", nested JARs will be kept in memory", e);
+				directory = null;
+			}
+		}
+
+		this.inMemory = directory == null;
+		this.directory = directory != null ? directory : getInMemoryFs().getPath("/");
+	}
+
+	private static synchronized FileSystem getInMemoryFs() {
+		if (inMemoryFs == null) {
+			inMemoryFs = Jimfs.newFileSystem(
+				"nestedJarStore",
+				Configuration.builder(PathType.unix())
+					.setRoots("/")
+					.setWorkingDirectory("/")
+					.setAttributeViews("basic")
+					.setSupportedFeatures(SECURE_DIRECTORY_STREAM, FILE_CHANNEL)
+					.build()
+			);
+		}
+
+		return inMemoryFs;
+	}
+
+	/**
+	 * @return The previously extracted JAR with the given name, or null if it is no longer present.
+	 */
+	Path get(String name) {
+		Path path = directory.resolve(name);
+		if (!Files.isRegularFile(path)) return null;
+
+		used.add(name);
+		touch(path);
+		return path;
+	}
+
+	/**
+	 * Copies a nested JAR into the store, unless an identical one is already there.
+	 *
+	 * @return The stored copy of the JAR.
+	 */
+	Path extract(Path nestedJar) throws IOException {
+		Path tmp = directory.resolve(UUID.randomUUID() + ".tmp");
+
+		try {
+			String name = HashUtil.toHex(HashUtil.copy(nestedJar, tmp)) + ".jar";
+			Path dest = directory.resolve(name);
+			used.add(name);
+
+			if (!Files.exists(dest)) {
+				try {
+					Files.move(tmp, dest);
+				} catch (FileAlreadyExistsException e) {
+					// Extracted by another thread in the meantime
+					touch(dest);
+				}
+			} else {
+				touch(dest);
+			}
+
+			return dest;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Counts a JAR which was already taken from the store (such as by an earlier resolution) as used.
+	 */
+	void markUsed(Path stored) {
+		if (stored.getParent().equals(directory) && used.add(stored.getFileName().toString())) {
+			touch(stored);
+		}
+	}
+
+	/**
+	 * Stops counting a JAR just extracted as used, so it is removed with the other unused ones unless something else
+	 * uses it.
+	 */
+	void discard(Path stored) {
+		used.remove(stored.getFileName().toString());
+	}
+
+	/**
+	 * Marks a stored JAR as recently used, so no other instance sharing the store removes it.
+	 */
+	private void touch(Path stored) {
+		if (inMemory) return;
+
+		try {
+			Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// Only means it might be extracted again later
+		}
+	}
+
+	/**
+	 * Removes every stored JAR which hasn't been used since the store was created, unless it is shared on disk and
+	 * was used by any instance within the last few days (fabric.loader.nestedJarRetentionDays, 7 by default).
+	 *
+	 * <p>Temporary files may still be being written by another instance, so they are only removed once they are as
+	 * old as that too, which means whoever wrote them died before finishing.</p>
+	 */
+	void removeUnused(Logger logger) {
+		long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Long.getLong("fabric.loader.nestedJarRetentionDays", 7));
+		// Nothing else can use JARs kept in memory
+		long jarCutoff = inMemory ? Long.MAX_VALUE : cutoff;
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+
+				try {
+					if (name.endsWith(".jar") && !used.contains(name) && Files.getLastModifiedTime(path).toMillis() < jarCutoff) {
+						logger.debug("Removing unused nested JAR " + name);
+						Files.deleteIfExists(path);
+					} else if (name.endsWith(".tmp") && Files.getLastModifiedTime(path).toMillis() < cutoff) {
+						logger.debug("Removing abandoned nested JAR " + name);
+						Files.deleteIfExists(path);
+					}
+				} catch (IOException e) {
+					// Most likely still open in another instance
+					logger.debug("Failed to remove " + name + " from the nested JAR store", e);
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Failed to clean up nested JAR store", e);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.discovery;
+
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.metadata.LoaderModMetadata;
+import net.fabricmc.loader.util.HashUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers which mods were picked on the previous launch, along with a fingerprint of every candidate there was to
+ * pick from, so that the same candidates don't have to be solved for again.
+ *
+ * <p>The fingerprint covers everything the choice depends on: each candidate's id, version and depth, and what it
+ * depends on, recommends, suggests, conflicts with and breaks. Where the mods were found doesn't matter, so the
+ * picked mods are remembered by id and version and looked up again among the current candidates.</p>
+ */
+final class ResolutionSnapshot {
+	private static final int MAGIC = 0x46524553; // FRES
+	// Bump whenever the way mods are picked changes, so older choices aren't reused
+	private static final int FORMAT_VERSION = 1;
+
+	private ResolutionSnapshot() {
+	}
+
+	static byte[] fingerprint(Map<String, ModCandidateSet> candidatesById) throws ModResolutionException {
+		MessageDigest digest = HashUtil.newSha1();
+
+		for (ModCandidateSet set : new TreeMap<>(candidatesById).values()) {
+			List<ModCandidate> candidates = new ArrayList<>(set.toSortedSet());
+			candidates.sort(Comparator.comparing(c -> c.getInfo().getVersion().getFriendlyString()));
+
+			for (ModCandidate candidate : candidates) {
+				LoaderModMetadata info = candidate.getInfo();
+				HashUtil.update(digest, info.getId());
+				HashUtil.update(digest, info.getVersion().getFriendlyString());
+				HashUtil.update(digest, Integer.toString(candidate.getDepth()));
+				update(digest, info.getDepends());
+				update(digest, info.getRecommends());
+				update(digest, info.getSuggests());
+				update(digest, info.getConflicts());
+				update(digest, info.getBreaks());
+			}
+		}
+
+		return digest.digest();
+	}
+
+	private static void update(MessageDigest digest, Collection<ModDependency> dependencies) {
+		String[] names = new String[dependencies.size()];
+		int i = 0;
+
+		for (ModDependency dependency : dependencies) {
+			names[i++] = dependency.toString();
+		}
+
+		// Dependencies can come out of a hash map, in whatever order that keeps them
+		Arrays.sort(names);
+		HashUtil.update(digest, Integer.toString(names.length));
+
+		for (String name : names) {
+			HashUtil.update(digest, name);
+		}
+	}
+
+	/**
+	 * @return The mods picked last time from candidates with the same fingerprint, or null if there weren't any (or they
+	 * can no longer be found).
+	 */
+	static Map<String, ModCandidate> load(Logger logger, Path file, byte[] fingerprint, Map<String, ModCandidateSet> candidatesById) {
+		if (!Files.isRegularFile(file)) return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+
+			byte[] previous = new byte[in.readUnsignedByte()];
+			in.readFully(previous);
+			if (!Arrays.equals(previous, fingerprint)) return null;
+
+			int count = in.readInt();
+			Map<String, ModCandidate> result = new HashMap<>(count * 2);
+
+			for (int i = 0; i < count; i++) {
+				String id = in.readUTF();
+				String version = in.readUTF();
+				ModCandidate candidate = find(candidatesById.get(id), version);
+
+				if (candidate == null) {
+					logger.debug("Previously picked mod %s@%s is missing, resolving mods again", id, version);
+					return null;
+				}
+
+				result.put(id, candidate);
+			}
+
+			return result;
+		} catch (IOException | ModResolutionException e) {
+			logger.debug("Failed to read previous mod resolution, resolving mods again", e);
+			return null;
+		}
+	}
+
+	private static ModCandidate find(ModCandidateSet set, String version) throws ModResolutionException {
+		if (set == null) return null;
+
+		for (ModCandidate candidate : set.toSortedSet()) {
+			if (candidate.getInfo().getVersion().getFriendlyString().equals(version)) {
+				return candidate;
+			}
+		}
+
+		return null;
+	}
+
+	static void save(Logger logger, Path file, byte[] fingerprint, Map<String, ModCandidate> result) {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(file.getParent());
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeByte(fingerprint.length);
+				out.write(fingerprint);
+				out.writeInt(result.size());
+
+				for (ModCandidate candidate : result.values()) {
+					out.writeUTF(candidate.getInfo().getId());
+					out.writeUTF(candidate.getInfo().getVersion().getFriendlyString());
+				}
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.debug("Failed to save mod resolution", e);
+		}
+	}
+}
@@ -33,5 +33,6 @@ public final class EntrypointClient {
 		FabricLoader.INSTANCE.instantiateMods(runDir, gameInstance);
 		EntrypointUtils.logErrors("main", FabricLoader.INSTANCE.getEntrypoints("main", ModInitializer.class), ModInitializer::onInitialize);
 		EntrypointUtils.logErrors("client", FabricLoader.INSTANCE.getEntrypoints("client", ClientModInitializer.class), ClientModInitializer::onInitializeClient);
+		EntrypointUtils.reportTimings();
 	}
 }
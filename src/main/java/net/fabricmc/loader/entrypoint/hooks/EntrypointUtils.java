@@ -16,8 +16,10 @@
 
 package net.fabricmc.loader.entrypoint.hooks;
 
+import net.fabricmc.loader.EntrypointProfiler;
 import net.fabricmc.loader.FabricLoader;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -30,15 +32,22 @@ final class EntrypointUtils {
 
 	static <T> void logErrors(String name, Collection<T> entrypoints, Consumer<T> entrypointConsumer) {
 		List<Throwable> errors = new ArrayList<>();
+		EntrypointProfiler profiler = FabricLoader.INSTANCE.getEntrypointProfiler();
 
 		FabricLoader.INSTANCE.getLogger().debug("Iterating over entrypoint '" + name + "'");
 
 		entrypoints.forEach((e) -> {
+			long start = System.nanoTime();
+
 			try {
 				entrypointConsumer.accept(e);
 			} catch (Throwable t) {
 				errors.add(t);
 			}
+
+			if (profiler.isEnabled()) {
+				profiler.recordRun(name, e, System.nanoTime() - start);
+			}
 		});
 
 		if (!errors.isEmpty()) {
@@ -51,4 +60,12 @@ final class EntrypointUtils {
 			throw exception;
 		}
 	}
+
+	/**
+	 * Reports how long the entrypoints took to start up, once the game's have all been run.
+	 */
+	static void reportTimings() {
+		File gameDir = FabricLoader.INSTANCE.getGameDirectory();
+		FabricLoader.INSTANCE.getEntrypointProfiler().report(FabricLoader.INSTANCE.getLogger(), gameDir != null ? gameDir.toPath() : null);
+	}
 }
@@ -33,6 +33,12 @@ public interface GameProvider {
 	default Path getDeobfJarDirectory() {
 		return getLaunchDirectory().resolve(".fabric" + File.separator + "remappedJars" + (hasGameID() ? File.separator + getGameId() : ""));
 	}
+	default Path getClassCacheDirectory() {
+		return getLaunchDirectory().resolve(".fabric" + File.separator + "classcache" + (hasGameID() ? File.separator + getGameId() : ""));
+	}
+	default Path getMappingsCacheDirectory() {
+		return getLaunchDirectory().resolve(".fabric" + File.separator + "mappings");
+	}
 	boolean isObfuscated();
 	boolean requiresUrlClassLoader();
 	List<Path> getGameContextJars();
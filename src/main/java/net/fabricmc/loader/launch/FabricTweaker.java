@@ -90,6 +90,8 @@ public abstract class FabricTweaker extends FabricLauncherBase implements ITweak
 
 		launchClassLoader.registerTransformer("net.fabricmc.loader.launch.FabricClassTransformer");
 
+		getMappingConfiguration().setCacheDirectory(new File(gameDir, ".fabric" + File.separator + "mappings").toPath());
+
 		if (!isDevelopment) {
 			// Obfuscated environment
 			Launch.blackboard.put("fabric.development", false);
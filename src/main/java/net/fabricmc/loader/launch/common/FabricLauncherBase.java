@@ -17,13 +17,13 @@
 package net.fabricmc.loader.launch.common;
 
 import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.util.mappings.BinaryMappings;
 import net.fabricmc.loader.util.mappings.TinyRemapperMappingsHelper;
 import net.fabricmc.loader.util.UrlConversionException;
 import net.fabricmc.loader.util.UrlUtil;
 import net.fabricmc.loader.util.Arguments;
 import net.fabricmc.loader.util.FileSystemUtil;
 import net.fabricmc.loader.util.FileSystemUtil.FileSystemDelegate;
-import net.fabricmc.mappings.Mappings;
 import net.fabricmc.tinyremapper.IMappingProvider;
 import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
@@ -42,6 +42,10 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class FabricLauncherBase implements FabricLauncher {
@@ -53,6 +57,11 @@ public abstract class FabricLauncherBase implements FabricLauncher {
 	private static Map<String, Object> properties;
 	private static FabricLauncher launcher;
 	private static MappingConfiguration mappingConfiguration = new MappingConfiguration();
+	private static BinaryMappings remapMappingsSource;
+	private static String remapMappingsKey;
+	private static IMappingProvider remapMappings;
+	/** Held while a remapper reads (or releases) the shared remapping classpath, see {@link #remap}. */
+	private static final Object remapClasspathLock = new Object();
 
 	protected FabricLauncherBase() {
 		setLauncher(this);
@@ -103,38 +112,56 @@ public abstract class FabricLauncherBase implements FabricLauncher {
 	}
 	
 	private static Path deobfuscate(Path deobfJarDir, Path jarFile, String name, FabricLauncher launcher) {
-		Path resultJarFile = jarFile;
-
-		LOGGER.debug("Requesting deobfuscation of " + jarFile.getFileName());
+		return deobfuscate(deobfJarDir, Collections.singletonList(jarFile), name, launcher).get(0);
+	}
 
-		Mappings mappings = launcher.isDevelopment() && "Minecraft".equals(name) ? null : mappingConfiguration.getMappings();
+	/**
+	 * Remaps a batch of jars, each on its own remapper but all at the same time.
+	 *
+	 * <p>The mappings and the remapping classpath are only resolved once for the whole batch.</p>
+	 *
+	 * @return The jar to use in place of each of the given jars, in the same order.
+	 */
+	private static List<Path> deobfuscate(Path deobfJarDir, List<Path> jarFiles, String name, FabricLauncher launcher) {
+		List<Path> resultJarFiles = new ArrayList<>(jarFiles);
+
+		BinaryMappings mappings = launcher.isDevelopment() && "Minecraft".equals(name) ? null : mappingConfiguration.getBinaryMappings();
 		String targetNamespace = mappingConfiguration.getTargetNamespace();
 
-		if (mappings != null && mappings.getNamespaces().contains(targetNamespace)) {
-			LOGGER.debug("Fabric mapping file detected, applying...");
+		if (mappings == null || !mappings.getNamespaces().contains(targetNamespace)) {
+			return resultJarFiles;
+		}
+
+		LOGGER.debug("Fabric mapping file detected, applying...");
+		RemappedJarCache.Entry[] entries = new RemappedJarCache.Entry[jarFiles.size()];
+		List<Integer> pending = new ArrayList<>();
+		Set<String> pendingKeys = new HashSet<>();
+		RemappedJarCache cache;
+
+		try {
+			if (Files.notExists(deobfJarDir)) {
+				Files.createDirectories(deobfJarDir);
+			}
+
+			cache = RemappedJarCache.get(deobfJarDir);
+
+			for (int i = 0; i < jarFiles.size(); i++) {
+				Path jarFile = jarFiles.get(i);
+				LOGGER.debug("Requesting deobfuscation of " + jarFile.getFileName());
 
-			try {
 				if (!Files.exists(jarFile)) {
 					throw new RuntimeException("Could not locate " + name + ": " + jarFile + " not found");
 				}
 
-				if (Files.notExists(deobfJarDir)) {
-					Files.createDirectories(deobfJarDir);
-				}
-
 				if (minecraftJar != null && minecraftJar.equals(jarFile)) {
 					//Avoid double mapping Minecraft, which can happen when FML loads mods out of the jar (such as Forge)
-					return minecraftJar;
-				}
-				if (Files.exists(deobfJarDir.resolve(jarFile.getFileName()))) {
-					//Avoid double mapping any other jar that's already done, can happen if a jar contains multiple mods (like BuildCraft)
-					return deobfJarDir.resolve(jarFile.getFileName());
+					resultJarFiles.set(i, minecraftJar);
+					continue;
 				}
-				
-				// TODO: allow versioning mappings?
-				String deobfJarFilename = mappingConfiguration.getTargetNamespace() + "-" + jarFile.getFileName();
-				Path deobfJarPath = deobfJarDir.resolve(deobfJarFilename);
-				Path deobfJarPathTmp = deobfJarDir.resolve(deobfJarFilename + ".tmp");
+
+				RemappedJarCache.Entry entry = cache.lookup(jarFile, name, mappingConfiguration.getMappingsHash(), mappingConfiguration.getOriginNamespace(), targetNamespace);
+				Path deobfJarPath = entry.getOutput();
+				Path deobfJarPathTmp = deobfJarPath.resolveSibling(deobfJarPath.getFileName() + ".tmp");
 
 				if (Files.exists(deobfJarPathTmp)) {
 					LOGGER.warn("Incomplete remapped file found! This means that the remapping process failed on the previous launch. If this persists, make sure to let us at Fabric know!");
@@ -142,161 +169,271 @@ public abstract class FabricLauncherBase implements FabricLauncher {
 					assert Files.notExists(deobfJarPathTmp);
 				}
 
-				if (!Files.exists(deobfJarPath)) {
-					boolean found = false;
-					while (!found) {
-						if (!emittedInfo && "Minecraft".equals(name)) {
-							LOGGER.info("Fabric is preparing JARs on first launch, this may take a few seconds...");
-							emittedInfo = true;
-						}
+				resultJarFiles.set(i, deobfJarPath);
+				entries[i] = entry;
 
-						TinyRemapper remapper = TinyRemapper.newRemapper()
-							.withMappings(TinyRemapperMappingsHelper.create(mappings, mappingConfiguration.getOriginNamespace(), targetNamespace))
-							//.withMappings(shiftRootPackages(jarFile, name))
-							.rebuildSourceFilenames(true)
-							.build();
+				// The same jar can be asked for more than once in a batch, it only wants remapping (into the shared output) once
+				if (!entry.isValid() && pendingKeys.add(entry.getKey())) {
+					pending.add(i);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 
-						Set<Path> depPaths = new HashSet<>();
+		if (!pending.isEmpty()) {
+			if (!emittedInfo && "Minecraft".equals(name)) {
+				LOGGER.info("Fabric is preparing JARs on first launch, this may take a few seconds...");
+				emittedInfo = true;
+			}
 
-						if (!"Minecraft".equals(name)) {
-							depPaths.add(obfMinecraftJar);
+			IMappingProvider mappingProvider = getRemapMappings(mappings, mappingConfiguration.getOriginNamespace(), targetNamespace);
+			Set<Path> depPaths = getRemapClasspath(name, launcher);
+			int threads = Math.min(pending.size(), Math.max(1, Integer.getInteger("fabric.loader.remapThreads", Runtime.getRuntime().availableProcessors())));
+
+			try {
+				if (threads == 1) {
+					for (int i : pending) {
+						remap(jarFiles.get(i), entries[i], name, mappingProvider, depPaths, cache);
+					}
+				} else {
+					LOGGER.debug("Remapping " + pending.size() + " jars on " + threads + " threads");
+					ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+					try {
+						List<Future<?>> futures = new ArrayList<>();
+
+						for (int i : pending) {
+							Path jarFile = jarFiles.get(i);
+							RemappedJarCache.Entry entry = entries[i];
+							futures.add(executor.submit(() -> remap(jarFile, entry, name, mappingProvider, depPaths, cache)));
 						}
-						
-						for (URL url : launcher.getLoadTimeDependencies()) {
+
+						for (Future<?> future : futures) {
 							try {
-								Path path = UrlUtil.asPath(url);
-								if (!Files.exists(path)) {
-									throw new RuntimeException("Path does not exist: " + path);
+								future.get();
+							} catch (ExecutionException e) {
+								if (e.getCause() instanceof RuntimeException) {
+									throw (RuntimeException) e.getCause();
 								}
 
-								if (!path.equals(jarFile)) {
-									depPaths.add(path);
-								}
-							} catch (UrlConversionException e) {
-								throw new RuntimeException("Failed to convert '" + url + "' to path!", e);
+								throw new RuntimeException(e.getCause());
+							} catch (InterruptedException e) {
+								throw new RuntimeException(e);
 							}
 						}
+					} finally {
+						executor.shutdownNow();
+					}
+				}
+			} finally {
+				// Minecraft doesn't tend to check if a ZipFileSystem is already present,
+				// so we clean up here. This waits for the whole batch as the remappers share the classpath.
+				for (Path p : depPaths) {
+					closeJarFileSystem(p);
+				}
+			}
+		}
 
-						try (FileSystemDelegate fs = FileSystemUtil.getJarFileSystem(deobfJarPathTmp, true); OutputConsumerPath outputConsumer = new OutputConsumerPath(fs.get().getPath("/")) {
-							@Override
-							public void accept(String clsName, byte[] data) {
-								// don't accept class names from a blacklist of dependencies that Fabric itself utilizes
-								// TODO: really could use a better solution, as always...
-								if (clsName.startsWith("com/google/common/")
-									|| clsName.startsWith("com/google/gson/")
-									|| clsName.startsWith("com/google/thirdparty/")
-									|| clsName.startsWith("org/apache/logging/log4j/")) {
-									return;
-								}
+		cache.save();
 
-								super.accept(clsName, data);
-							}
-						}) {
-							for (Path path : depPaths) {
-								LOGGER.debug("Appending '" + path + "' to remapper classpath");
-								remapper.readClassPath(path);
-							}
-							remapper.readInputs(jarFile);
-							remapper.apply(outputConsumer);
-						} catch (IOException e) {
-							throw new RuntimeException("Failed to remap '" + jarFile + "'!", e);
-						} finally {
-							remapper.finish();
-						}
+		for (Path resultJarFile : resultJarFiles) {
+			if (Files.notExists(resultJarFile)) {
+				throw new RuntimeException("Remapped .JAR file does not exist after remapping! Cannot continue!");
+			}
+		}
 
-						// Minecraft doesn't tend to check if a ZipFileSystem is already present,
-						// so we clean up here.
+		return resultJarFiles;
+	}
 
-						depPaths.add(deobfJarPath);
-						for (Path p : depPaths) {
-							try {
-								p.getFileSystem().close();
-							} catch (Exception e) {
-								// pass
-							}
+	private static synchronized IMappingProvider getRemapMappings(BinaryMappings mappings, String from, String to) {
+		String key = from + "->" + to;
+
+		if (remapMappingsSource != mappings || !key.equals(remapMappingsKey)) {
+			// Flatten the mappings once, rather than every remapper walking (and concatenating) each entry again
+			Map<String, String> classMap = new HashMap<>();
+			Map<String, String> fieldMap = new HashMap<>();
+			Map<String, String> methodMap = new HashMap<>();
+			TinyRemapperMappingsHelper.create(mappings, from, to).load(classMap, fieldMap, methodMap);
+
+			remapMappings = (classes, fields, methods) -> {
+				classes.putAll(classMap);
+				fields.putAll(fieldMap);
+				methods.putAll(methodMap);
+			};
+			remapMappingsSource = mappings;
+			remapMappingsKey = key;
+		}
 
-							try {
-								FileSystems.getFileSystem(new URI("jar:" + p.toUri())).close();
-							} catch (Exception e) {
-								// pass
+		return remapMappings;
+	}
+
+	private static Set<Path> getRemapClasspath(String name, FabricLauncher launcher) {
+		Set<Path> depPaths = new HashSet<>();
+
+		if (!"Minecraft".equals(name)) {
+			depPaths.add(obfMinecraftJar);
+		}
+
+		for (URL url : launcher.getLoadTimeDependencies()) {
+			try {
+				Path path = UrlUtil.asPath(url);
+				if (!Files.exists(path)) {
+					throw new RuntimeException("Path does not exist: " + path);
+				}
+
+				depPaths.add(path);
+			} catch (UrlConversionException e) {
+				throw new RuntimeException("Failed to convert '" + url + "' to path!", e);
+			}
+		}
+
+		return depPaths;
+	}
+
+	private static void remap(Path jarFile, RemappedJarCache.Entry entry, String name, IMappingProvider mappingProvider, Set<Path> depPaths, RemappedJarCache cache) {
+		Path deobfJarPath = entry.getOutput();
+		Path deobfJarPathTmp = deobfJarPath.resolveSibling(deobfJarPath.getFileName() + ".tmp");
+
+		try {
+			boolean found = false;
+			while (!found) {
+				TinyRemapper remapper = TinyRemapper.newRemapper()
+					.withMappings(mappingProvider)
+					//.withMappings(shiftRootPackages(jarFile, name))
+					.rebuildSourceFilenames(true)
+					.build();
+
+				try (FileSystemDelegate fs = FileSystemUtil.getJarFileSystem(deobfJarPathTmp, true); OutputConsumerPath outputConsumer = new OutputConsumerPath(fs.get().getPath("/")) {
+					@Override
+					public void accept(String clsName, byte[] data) {
+						// don't accept class names from a blacklist of dependencies that Fabric itself utilizes
+						// TODO: really could use a better solution, as always...
+						if (clsName.startsWith("com/google/common/")
+							|| clsName.startsWith("com/google/gson/")
+							|| clsName.startsWith("com/google/thirdparty/")
+							|| clsName.startsWith("org/apache/logging/log4j/")) {
+							return;
+						}
+
+						super.accept(clsName, data);
+					}
+				}) {
+					// Every remapper in a batch reads the same classpath jars, which tiny-remapper opens (and closes) as
+					// zip file systems of its own. Only one remapper at a time is allowed near them so they can't
+					// trip over each other's file systems; the classes are held in memory once read.
+					synchronized (remapClasspathLock) {
+						for (Path path : depPaths) {
+							if (!path.equals(jarFile)) {
+								LOGGER.debug("Appending '" + path + "' to remapper classpath");
+								remapper.readClassPath(path);
 							}
 						}
+					}
 
-						Files.move(deobfJarPathTmp, deobfJarPath);
+					remapper.readInputs(jarFile);
+					remapper.apply(outputConsumer);
+				} catch (IOException e) {
+					throw new RuntimeException("Failed to remap '" + jarFile + "'!", e);
+				} finally {
+					synchronized (remapClasspathLock) {
+						remapper.finish();
+					}
+				}
 
-						try (FileSystemDelegate fs = FileSystemUtil.getJarFileSystem(deobfJarPath, false)) {
-							AtomicBoolean foundClass = new AtomicBoolean(false);
+				closeJarFileSystem(deobfJarPath);
+				Files.move(deobfJarPathTmp, deobfJarPath);
 
-							for (Path root : fs.get().getRootDirectories()) {
-								Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-									@Override
-									public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-										if (file.getFileName().toString().endsWith(".class")) {
-											foundClass.set(true);
-											return FileVisitResult.TERMINATE;
-										}
+				try (FileSystemDelegate fs = FileSystemUtil.getJarFileSystem(deobfJarPath, false)) {
+					AtomicBoolean foundClass = new AtomicBoolean(false);
 
-										return FileVisitResult.CONTINUE;
-									}
-								});
+					for (Path root : fs.get().getRootDirectories()) {
+						Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+							@Override
+							public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+								if (file.getFileName().toString().endsWith(".class")) {
+									foundClass.set(true);
+									return FileVisitResult.TERMINATE;
+								}
+
+								return FileVisitResult.CONTINUE;
 							}
+						});
+					}
 
-							if (!foundClass.get()) {
-								LOGGER.error("Generated deobfuscated JAR contains no classes! Trying again...");
-								Files.delete(deobfJarPath);
-							} else {
-								if (!"Minecraft".equals(name)) {
-									try (FileSystemDelegate oldFS = FileSystemUtil.getJarFileSystem(jarFile, false)) {
-										for (Path root : oldFS.get().getRootDirectories()) {
-											Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-												@Override
-												public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-													if (!file.getFileName().toString().endsWith(".class")) {
-														Path to = fs.get().getPath(file.toString());
-														if (to.getParent() != null) {
-												            Files.createDirectories(to.getParent());
-												        }
-
-														Files.copy(file, to);
-													}
-
-													return FileVisitResult.CONTINUE;
-												}
-											});
+					if (!foundClass.get()) {
+						LOGGER.error("Generated deobfuscated JAR contains no classes! Trying again...");
+						Files.delete(deobfJarPath);
+					} else {
+						if (!"Minecraft".equals(name)) {
+							try (FileSystemDelegate oldFS = FileSystemUtil.getJarFileSystem(jarFile, false)) {
+								for (Path root : oldFS.get().getRootDirectories()) {
+									Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+										@Override
+										public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+											if (!file.getFileName().toString().endsWith(".class")) {
+												Path to = fs.get().getPath(file.toString());
+												if (to.getParent() != null) {
+										            Files.createDirectories(to.getParent());
+										        }
+
+												Files.copy(file, to);
+											}
+
+											return FileVisitResult.CONTINUE;
 										}
-									}
+									});
 								}
-
-								found = true;
 							}
 						}
+
+						found = true;
 					}
 				}
+			}
 
-				if (Files.notExists(deobfJarPath)) {
-					throw new RuntimeException("Remapped .JAR file does not exist after remapping! Cannot continue!");
-				}
+			cache.put(entry);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
-				resultJarFile = deobfJarPath;
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+	private static void closeJarFileSystem(Path path) {
+		try {
+			path.getFileSystem().close();
+		} catch (Exception e) {
+			// pass
 		}
 
-		return resultJarFile;
+		try {
+			FileSystems.getFileSystem(new URI("jar:" + path.toUri())).close();
+		} catch (Exception e) {
+			// pass
+		}
 	}
 
 	protected static void deobfuscateMinecraft(Path deobfJarDir, Path obfMinecraftJar, FabricLauncher launcher) {
-		Path resultJarFile = deobfuscate(deobfJarDir, FabricLauncherBase.obfMinecraftJar = obfMinecraftJar, "Minecraft", launcher);
+		deobfuscateMinecraft(deobfJarDir, Collections.singletonList(obfMinecraftJar), launcher);
+	}
 
-		try {
-			launcher.propose(UrlUtil.asUrl(resultJarFile));
-		} catch (UrlConversionException e) {
-			throw new RuntimeException(e);
-		}
+	/**
+	 * Remaps all of the game's jars together, proposing each result to the launcher.
+	 * The first jar is treated as the main game jar.
+	 */
+	protected static void deobfuscateMinecraft(Path deobfJarDir, List<Path> obfMinecraftJars, FabricLauncher launcher) {
+		if (obfMinecraftJars.isEmpty()) return;
+		FabricLauncherBase.obfMinecraftJar = obfMinecraftJars.get(0);
 
-		if (minecraftJar == null) {
-			minecraftJar = resultJarFile;
+		for (Path resultJarFile : deobfuscate(deobfJarDir, obfMinecraftJars, "Minecraft", launcher)) {
+			try {
+				launcher.propose(UrlUtil.asUrl(resultJarFile));
+			} catch (UrlConversionException e) {
+				throw new RuntimeException(e);
+			}
+
+			if (minecraftJar == null) {
+				minecraftJar = resultJarFile;
+			}
 		}
 	}
 
@@ -304,6 +441,10 @@ public abstract class FabricLauncherBase implements FabricLauncher {
 		return deobfuscate(deobfJarDir, jarFile, "Jar", launcher);
 	}
 
+	protected static List<Path> deobfuscate(Path deobfJarDir, List<Path> jarFiles, FabricLauncher launcher) {
+		return deobfuscate(deobfJarDir, jarFiles, "Jar", launcher);
+	}
+
 	public static void processArgumentMap(Arguments argMap, EnvType envType) {
 		switch (envType) {
 			case CLIENT:
@@ -28,6 +28,7 @@ import org.spongepowered.asm.launch.MixinBootstrap;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.Mixins;
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -59,12 +60,14 @@ public final class FabricMixinBootstrap {
 
 		if (FabricLauncherBase.getLauncher().isDevelopment()) {
 			MappingConfiguration mappingConfiguration = FabricLauncherBase.getLauncher().getMappingConfiguration();
-			Mappings mappings = mappingConfiguration.getMappings();
+			Collection<String> namespaces = mappingConfiguration.getBinaryMappings().getNamespaces();
 
-			if (mappings != null && mappings.getNamespaces().contains("intermediary") && mappings.getNamespaces().contains(mappingConfiguration.getTargetNamespace())) {
+			if (namespaces.contains("intermediary") && namespaces.contains(mappingConfiguration.getTargetNamespace())) {
 				System.setProperty("mixin.env.remapRefMap", "true");
 
 				try {
+					// Mixin's remapper needs the full mappings object, so these have to be parsed
+					Mappings mappings = mappingConfiguration.getMappings();
 					MixinIntermediaryDevRemapper remapper = new MixinIntermediaryDevRemapper(mappings, "intermediary", mappingConfiguration.getTargetNamespace());
 					MixinEnvironment.getDefaultEnvironment().getRemappers().add(remapper);
 					LOGGER.info("Loaded Fabric development mappings for mixin remapper!");
@@ -16,6 +16,8 @@
 
 package net.fabricmc.loader.launch.common;
 
+import net.fabricmc.loader.util.HashUtil;
+import net.fabricmc.loader.util.mappings.BinaryMappings;
 import net.fabricmc.mappings.Mappings;
 import net.fabricmc.mappings.MappingsProvider;
 import org.apache.logging.log4j.LogManager;
@@ -23,6 +25,9 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Locale;
 
 public class MappingConfiguration {
@@ -30,40 +35,141 @@ public class MappingConfiguration {
 
 	private static Mappings mappings;
 	private static boolean checkedMappings;
+	private static volatile BinaryMappings binaryMappings;
+	private static String mappingsHash;
+	private static boolean hashedMappings;
+	private static Path cacheDirectory;
 
+	/**
+	 * Parses the mappings file, prefer {@link #getBinaryMappings()} unless a full {@link Mappings} object is needed.
+	 */
 	public Mappings getMappings() {
 		if (!checkedMappings) {
-			InputStream mappingStream = FabricLauncherBase.class.getClassLoader().getResourceAsStream("mappings/mappings.tiny");
-
-			if (mappingStream != null) {
-				try {
-					long time = System.currentTimeMillis();
-					mappings = MappingsProvider.readTinyMappings(mappingStream);
-					LOGGER.debug("Loading mappings took " + (System.currentTimeMillis() - time) + " ms");
-				} catch (IOException ee) {
-					ee.printStackTrace();
-				}
+			mappings = parseMappings();
+			checkedMappings = true;
+		}
 
-				try {
-					mappingStream.close();
-				} catch (IOException ee) {
-					ee.printStackTrace();
-				}
+		return mappings;
+	}
+
+	private static Mappings parseMappings() {
+		Mappings mappings = null;
+		InputStream mappingStream = FabricLauncherBase.class.getClassLoader().getResourceAsStream("mappings/mappings.tiny");
+
+		if (mappingStream != null) {
+			try {
+				long time = System.currentTimeMillis();
+				mappings = MappingsProvider.readTinyMappings(mappingStream);
+				LOGGER.debug("Loading mappings took " + (System.currentTimeMillis() - time) + " ms");
+			} catch (IOException ee) {
+				ee.printStackTrace();
 			}
 
-			if (mappings == null) {
-				mappings = MappingsProvider.createEmptyMappings();
+			try {
+				mappingStream.close();
+			} catch (IOException ee) {
+				ee.printStackTrace();
 			}
+		}
 
-			checkedMappings = true;
+		if (mappings == null) {
+			mappings = MappingsProvider.createEmptyMappings();
 		}
 
 		return mappings;
 	}
 
+	/**
+	 * Sets where compiled mappings are kept between launches, without one they are compiled again every launch.
+	 */
+	public void setCacheDirectory(Path directory) {
+		cacheDirectory = directory;
+	}
+
+	/**
+	 * Gets the mappings in their compiled form, which (after the first launch with a given mappings file) are memory
+	 * mapped from the cache directory rather than parsed.
+	 */
+	public BinaryMappings getBinaryMappings() {
+		BinaryMappings ret = binaryMappings;
+
+		if (ret == null) {
+			// Only one thread may compile the mappings, as doing so clears out every other compiled file first
+			synchronized (MappingConfiguration.class) {
+				ret = binaryMappings;
+
+				if (ret == null) {
+					binaryMappings = ret = loadBinaryMappings();
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private BinaryMappings loadBinaryMappings() {
+		String hash = getMappingsHash();
+		if (mappingsHash == null) return BinaryMappings.EMPTY;
+
+		Path file = cacheDirectory != null ? cacheDirectory.resolve(hash + ".bin") : null;
+
+		if (file != null && Files.isRegularFile(file)) {
+			try {
+				long time = System.currentTimeMillis();
+				BinaryMappings ret = BinaryMappings.open(file);
+				LOGGER.debug("Loading compiled mappings took " + (System.currentTimeMillis() - time) + " ms");
+				return ret;
+			} catch (IOException e) {
+				LOGGER.warn("Failed to load compiled mappings, compiling them again", e);
+			}
+		}
+
+		// Avoid holding on to the parsed mappings unless something else has already asked for them
+		Mappings mappings = checkedMappings ? MappingConfiguration.mappings : parseMappings();
+		if (file == null) return BinaryMappings.of(mappings);
+
+		try {
+			Files.createDirectories(cacheDirectory);
+
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory, "*.bin")) {
+				for (Path path : stream) {
+					LOGGER.debug("Removing stale compiled mappings " + path.getFileName());
+					Files.deleteIfExists(path);
+				}
+			}
+
+			BinaryMappings.write(mappings, file);
+			return BinaryMappings.open(file);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to save compiled mappings to " + file, e);
+			return BinaryMappings.of(mappings);
+		}
+	}
+
+	/**
+	 * @return A SHA-1 hash of the mappings file, or {@code "none"} if there are no mappings to apply.
+	 */
+	public String getMappingsHash() {
+		synchronized (MappingConfiguration.class) {
+			if (!hashedMappings) {
+				try (InputStream mappingStream = FabricLauncherBase.class.getClassLoader().getResourceAsStream("mappings/mappings.tiny")) {
+					if (mappingStream != null) {
+						mappingsHash = HashUtil.toHex(HashUtil.hash(mappingStream));
+					}
+				} catch (IOException e) {
+					LOGGER.warn("Failed to read mappings", e);
+				}
+
+				hashedMappings = true;
+			}
+
+			return mappingsHash != null ? mappingsHash : "none";
+		}
+	}
+
 	public String getOriginNamespace() {
 		String side = FabricLauncherBase.getLauncher().getEnvironmentType().name().toLowerCase(Locale.ENGLISH);
-		return getMappings().getNamespaces().contains(side) ? side : "official";
+		return getBinaryMappings().getNamespaces().contains(side) ? side : "official";
 	}
 
 	public String getTargetNamespace() {
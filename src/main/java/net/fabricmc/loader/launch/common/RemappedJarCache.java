@@ -0,0 +1,304 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.launch.common;
+
+import net.fabricmc.loader.util.HashUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the remapped jars in a deobfuscation directory.
+ *
+ * <p>Each remapped jar is keyed on a hash of its input jar, a hash of the mappings and the namespaces it was remapped
+ * between, so updating the mappings (or the jar) produces a new jar rather than reusing a stale one. A manifest in the
+ * directory records every remapped jar and the hash of every input seen, letting an unchanged jar be matched to its
+ * output without hashing or opening either again.</p>
+ *
+ * <p>Remapped jars made with other mappings are removed on save, as are the least recently used ones once the
+ * directory grows past {@code -Dfabric.loader.remappedJarCacheSize} megabytes (1024 by default).</p>
+ */
+final class RemappedJarCache {
+	private static final Logger LOGGER = LogManager.getFormatterLogger("FabricLoader");
+	/** Bump whenever the layout of the manifest, or what goes into the key, changes. */
+	private static final int FORMAT_VERSION = 1;
+	private static final String MANIFEST_NAME = "remappedJars.index";
+	private static final String MANIFEST_HEADER = "fabric-remapped-jars\t" + FORMAT_VERSION;
+
+	private static final Map<Path, RemappedJarCache> CACHES = new HashMap<>();
+
+	private final Path directory;
+	private final Map<String, InputRecord> inputs = new HashMap<>();
+	private final Map<String, OutputRecord> outputs = new HashMap<>();
+	private final Set<String> usedKeys = new HashSet<>();
+	private String currentMappingsHash;
+
+	static final class Entry {
+		private final String key;
+		private final Path output;
+		private final boolean valid;
+
+		private Entry(String key, Path output, boolean valid) {
+			this.key = key;
+			this.output = output;
+			this.valid = valid;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		Path getOutput() {
+			return output;
+		}
+
+		/**
+		 * @return Whether the output is already a complete remapped jar, rather than a path to create one at.
+		 */
+		boolean isValid() {
+			return valid;
+		}
+	}
+
+	private static final class InputRecord {
+		final long size, lastModified;
+		final String hash;
+
+		InputRecord(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	private static final class OutputRecord {
+		final String mappingsHash;
+		final String fileName;
+		long size;
+		long lastUsed;
+
+		OutputRecord(String mappingsHash, String fileName, long size, long lastUsed) {
+			this.mappingsHash = mappingsHash;
+			this.fileName = fileName;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	private RemappedJarCache(Path directory) {
+		this.directory = directory;
+	}
+
+	static synchronized RemappedJarCache get(Path directory) {
+		return CACHES.computeIfAbsent(directory.toAbsolutePath().normalize(), dir -> {
+			RemappedJarCache cache = new RemappedJarCache(dir);
+			cache.load();
+			return cache;
+		});
+	}
+
+	private void load() {
+		Path manifest = directory.resolve(MANIFEST_NAME);
+		if (!Files.isRegularFile(manifest)) return;
+
+		try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+			if (!MANIFEST_HEADER.equals(reader.readLine())) {
+				LOGGER.debug("Ignoring remapped jar manifest from a different version");
+				return;
+			}
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+
+				if (parts.length == 5 && parts[0].equals("input")) {
+					inputs.put(parts[1], new InputRecord(Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4]));
+				} else if (parts.length == 6 && parts[0].equals("output")) {
+					outputs.put(parts[1], new OutputRecord(parts[2], parts[3], Long.parseLong(parts[4]), Long.parseLong(parts[5])));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			LOGGER.warn("Failed to read remapped jar manifest, jars will be remapped again", e);
+			inputs.clear();
+			outputs.clear();
+		}
+	}
+
+	/**
+	 * Finds the remapped jar for the given input, or where it should be written if there isn't a valid one yet.
+	 *
+	 * @param input The jar to be remapped.
+	 * @param kind What sort of jar is being remapped, as the output differs between Minecraft and mod jars.
+	 */
+	synchronized Entry lookup(Path input, String kind, String mappingsHash, String from, String to) throws IOException {
+		currentMappingsHash = mappingsHash;
+
+		MessageDigest digest = HashUtil.newSha1();
+		HashUtil.update(digest, "format:" + FORMAT_VERSION);
+		HashUtil.update(digest, "kind:" + kind);
+		HashUtil.update(digest, "mappings:" + mappingsHash);
+		HashUtil.update(digest, "namespaces:" + from + "->" + to);
+		HashUtil.update(digest, "input:" + getInputHash(input));
+		String key = HashUtil.toHex(digest.digest());
+		usedKeys.add(key);
+
+		OutputRecord record = outputs.get(key);
+
+		if (record != null) {
+			Path output = directory.resolve(record.fileName);
+
+			try {
+				if (Files.size(output) == record.size) {
+					record.lastUsed = System.currentTimeMillis();
+					return new Entry(key, output, true);
+				}
+			} catch (NoSuchFileException e) {
+				// Removed from under us, remap it again
+			}
+
+			outputs.remove(key);
+		}
+
+		String fileName = input.getFileName().toString();
+		if (fileName.endsWith(".jar")) fileName = fileName.substring(0, fileName.length() - 4);
+
+		return new Entry(key, directory.resolve(to + "-" + fileName + "-" + key.substring(0, 12) + ".jar"), false);
+	}
+
+	/**
+	 * Records a remapped jar which has just been written to the entry's output.
+	 */
+	synchronized void put(Entry entry) throws IOException {
+		outputs.put(entry.key, new OutputRecord(currentMappingsHash, entry.output.getFileName().toString(), Files.size(entry.output), System.currentTimeMillis()));
+	}
+
+	private String getInputHash(Path input) throws IOException {
+		String path = input.toAbsolutePath().normalize().toString();
+		long size = Files.size(input);
+		long lastModified = Files.getLastModifiedTime(input).toMillis();
+		InputRecord record = inputs.get(path);
+
+		if (record == null || record.size != size || record.lastModified != lastModified) {
+			record = new InputRecord(size, lastModified, HashUtil.toHex(HashUtil.hash(input)));
+			inputs.put(path, record);
+		}
+
+		return record.hash;
+	}
+
+	/**
+	 * Removes any stale or excess remapped jars, then writes out the manifest.
+	 */
+	synchronized void save() {
+		long maxSize = Long.getLong("fabric.loader.remappedJarCacheSize", 1024) * 1024 * 1024;
+		List<Map.Entry<String, OutputRecord>> evictable = new ArrayList<>();
+		long totalSize = 0;
+
+		for (Iterator<Map.Entry<String, OutputRecord>> it = outputs.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, OutputRecord> entry = it.next();
+			OutputRecord record = entry.getValue();
+
+			if (!Files.isRegularFile(directory.resolve(record.fileName))) {
+				it.remove();
+			} else if (currentMappingsHash != null && !currentMappingsHash.equals(record.mappingsHash)) {
+				LOGGER.debug("Removing " + record.fileName + " as it was remapped with different mappings");
+				it.remove();
+			} else {
+				totalSize += record.size;
+				if (!usedKeys.contains(entry.getKey())) evictable.add(entry);
+			}
+		}
+
+		evictable.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+
+		for (Map.Entry<String, OutputRecord> entry : evictable) {
+			if (totalSize <= maxSize) break;
+
+			LOGGER.debug("Removing least recently used remapped jar " + entry.getValue().fileName);
+			outputs.remove(entry.getKey());
+			totalSize -= entry.getValue().size;
+		}
+
+		Set<String> keep = new HashSet<>();
+		keep.add(MANIFEST_NAME);
+
+		for (OutputRecord record : outputs.values()) {
+			keep.add(record.fileName);
+		}
+
+		// Anything else is either evicted above or was remapped before the manifest existed
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+			for (Path path : stream) {
+				if (!keep.contains(path.getFileName().toString())) {
+					try {
+						Files.deleteIfExists(path);
+					} catch (IOException e) {
+						LOGGER.debug("Failed to remove stale remapped jar " + path, e);
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.debug("Failed to clean up remapped jars", e);
+		}
+
+		inputs.keySet().removeIf(path -> !Files.exists(directory.getFileSystem().getPath(path)));
+
+		Path manifest = directory.resolve(MANIFEST_NAME);
+		Path tmp = directory.resolve(MANIFEST_NAME + ".tmp");
+
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				writer.write(MANIFEST_HEADER);
+				writer.newLine();
+
+				for (Map.Entry<String, InputRecord> entry : inputs.entrySet()) {
+					InputRecord record = entry.getValue();
+					writer.write("input\t" + entry.getKey() + "\t" + record.size + "\t" + record.lastModified + "\t" + record.hash);
+					writer.newLine();
+				}
+
+				for (Map.Entry<String, OutputRecord> entry : outputs.entrySet()) {
+					OutputRecord record = entry.getValue();
+					writer.write("output\t" + entry.getKey() + "\t" + record.mappingsHash + "\t" + record.fileName + "\t" + record.size + "\t" + record.lastUsed);
+					writer.newLine();
+				}
+			}
+
+			Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to write remapped jar manifest", e);
+		}
+	}
+}
@@ -31,7 +31,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -100,16 +99,19 @@ public final class Knot extends FabricLauncherBase {
 		// Setup classloader
 		// TODO: Provide KnotCompatibilityClassLoader in non-exclusive-Fabric pre-1.13 environments?
 		boolean useCompatibility = provider.requiresUrlClassLoader() || Boolean.parseBoolean(System.getProperty("fabric.loader.useCompatibilityClassLoader", "false"));
-		loader = useCompatibility ? new KnotCompatibilityClassLoader(isDevelopment(), envType, jar -> deobfuscate(provider.getDeobfJarDirectory(), jar, this)) : new KnotClassLoader(isDevelopment(), envType);
-
-		for (Path path : provider.getGameContextJars()) {
-			FabricLauncherBase.deobfuscateMinecraft(
-				provider.getDeobfJarDirectory(),
-				path,
-				this
-			);
+		loader = useCompatibility ? new KnotCompatibilityClassLoader(isDevelopment(), envType, jars -> deobfuscate(provider.getDeobfJarDirectory(), jars, this)) : new KnotClassLoader(isDevelopment(), envType);
+
+		if (Boolean.parseBoolean(System.getProperty("fabric.loader.jmx", "false"))) {
+			loader.getDelegate().getMetrics().register();
 		}
 
+		getMappingConfiguration().setCacheDirectory(provider.getMappingsCacheDirectory());
+		FabricLauncherBase.deobfuscateMinecraft(
+			provider.getDeobfJarDirectory(),
+			provider.getGameContextJars(),
+			this
+		);
+
 		// Locate entrypoints before switching class loaders
 		EntrypointTransformer.INSTANCE.locateEntrypoints(this);
 
@@ -119,12 +121,19 @@ public final class Knot extends FabricLauncherBase {
 		FabricLoader.INSTANCE.load();
 		FabricLoader.INSTANCE.freeze();
 
+		// Every mod is on the classpath now, so it is safe to stop probing each jar for every lookup
+		loader.indexClasspath();
+
 		MixinBootstrap.init();
 		FabricMixinBootstrap.init(getEnvironmentType(), FabricLoader.INSTANCE);
 		FabricLauncherBase.finishMixinBootstrapping();
 
 		loader.getDelegate().initializeTransformers();
 
+		if (Boolean.parseBoolean(System.getProperty("fabric.loader.classCache", "false"))) {
+			loader.getDelegate().setClassCache(KnotClassCache.create(provider.getClassCacheDirectory(), envType, isDevelopment, provider.getGameContextJars()));
+		}
+
 		provider.launch((ClassLoader) loader);
 	}
 
@@ -190,11 +199,25 @@ public final class Knot extends FabricLauncherBase {
 		return (ClassLoader) loader;
 	}
 
+	/**
+	 * @return What the target class loader has done so far.
+	 */
+	public KnotMetrics getMetrics() {
+		return loader.getDelegate().getMetrics();
+	}
+
 	@Override
 	public byte[] getClassByteArray(String name) throws IOException {
 		return loader.getDelegate().getClassByteArray(name, false);
 	}
 
+	/**
+	 * @return The persistent transformed class cache, or null if it is not enabled.
+	 */
+	public KnotClassCache getClassCache() {
+		return loader.getDelegate().getClassCache();
+	}
+
 	@Override
 	public boolean isDevelopment() {
 		return isDevelopment;
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.launch.knot;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.FabricLoader;
+import net.fabricmc.loader.ModContainer;
+import net.fabricmc.loader.launch.common.FabricLauncherBase;
+import net.fabricmc.loader.util.HashUtil;
+import net.fabricmc.loader.util.UrlConversionException;
+import net.fabricmc.loader.util.UrlUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persists the output of Knot's transformer chain between launches.
+ *
+ * <p>Entries are keyed on the class name and its untransformed bytes, and live in a directory named after a
+ * fingerprint of everything else which can change the output: the loaded mods (and every file in them, for mods
+ * which are directories), the contents of their mixin configs, the mappings and the game jars. Changing any of those
+ * moves the cache to a fresh directory and the stale one is removed on the next start.</p>
+ *
+ * <p>Only classes which Mixin left alone are stored: applying a mixin has side effects beyond the target's bytes
+ * (registering the inner classes it generates, running config plugins' hooks), so mixin targets are transformed on
+ * every launch. Cached classes otherwise never reach Mixin, so anything relying on Mixin seeing every class (auditing,
+ * class exporting) will not cover them. Enable with {@code -Dfabric.loader.classCache=true}.</p>
+ */
+public final class KnotClassCache {
+	private static final Logger LOGGER = LogManager.getFormatterLogger("KnotClassCache");
+	/** Bump whenever the layout of the cache, or what goes into the fingerprint, changes. */
+	private static final int FORMAT_VERSION = 2;
+
+	private final Path directory;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	private KnotClassCache(Path directory) {
+		this.directory = directory;
+	}
+
+	static KnotClassCache create(Path cacheDir, EnvType envType, boolean isDevelopment, Collection<Path> gameJars) {
+		String fingerprint;
+		try {
+			fingerprint = fingerprint(envType, isDevelopment, gameJars);
+		} catch (IOException e) {
+			LOGGER.warn("Unable to fingerprint the current environment, transformed classes will not be cached!", e);
+			return null;
+		}
+
+		Path directory = cacheDir.resolve(fingerprint);
+
+		try {
+			if (Files.isDirectory(cacheDir)) {
+				List<Path> stale;
+				try (Stream<Path> stream = Files.list(cacheDir)) {
+					stale = stream.filter(path -> !path.getFileName().toString().equals(fingerprint)).collect(Collectors.toList());
+				}
+
+				for (Path path : stale) {
+					LOGGER.debug("Removing stale class cache " + path.getFileName());
+					delete(path);
+				}
+			}
+
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			LOGGER.warn("Unable to prepare class cache at " + directory + ", transformed classes will not be cached!", e);
+			return null;
+		}
+
+		LOGGER.debug("Using class cache at " + directory);
+		return new KnotClassCache(directory);
+	}
+
+	private static String fingerprint(EnvType envType, boolean isDevelopment, Collection<Path> gameJars) throws IOException {
+		MessageDigest digest = HashUtil.newSha1();
+		HashUtil.update(digest, "format:" + FORMAT_VERSION);
+		HashUtil.update(digest, "env:" + envType + ',' + isDevelopment);
+
+		List<ModContainer> mods = new ArrayList<>(FabricLoader.INSTANCE.getModContainers());
+		mods.sort(Comparator.comparing(mod -> mod.getInfo().getId()));
+
+		for (ModContainer mod : mods) {
+			HashUtil.update(digest, "mod:" + mod.getInfo().getId() + '@' + mod.getInfo().getVersion().getFriendlyString());
+
+			try {
+				updateFile(digest, UrlUtil.asPath(mod.getOriginUrl()));
+			} catch (UrlConversionException e) {
+				HashUtil.update(digest, mod.getOriginUrl().toString());
+			}
+
+			for (String config : new TreeSet<>(mod.getInfo().getMixinConfigs(envType))) {
+				HashUtil.update(digest, "mixin:" + config);
+				Path configPath = mod.getRootPath().resolve(config);
+
+				// A config can change which mixins apply without the mod's own files looking any different
+				if (Files.isRegularFile(configPath)) {
+					digest.update(Files.readAllBytes(configPath));
+					digest.update((byte) 0);
+				}
+			}
+		}
+
+		for (Path jar : gameJars) {
+			updateFile(digest, jar);
+		}
+
+		HashUtil.update(digest, "mappings:" + FabricLauncherBase.getLauncher().getMappingConfiguration().getMappingsHash());
+
+		return HashUtil.toHex(digest.digest());
+	}
+
+	private static void updateFile(MessageDigest digest, Path path) throws IOException {
+		HashUtil.update(digest, "file:" + path.toAbsolutePath());
+
+		if (Files.isRegularFile(path)) {
+			// Size and modification time will catch a jar being replaced without having to read the whole thing
+			HashUtil.update(digest, Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis());
+		} else if (Files.isDirectory(path)) {
+			// Such as a mod in development, where any class (or mixin) in it can be recompiled in place
+			List<Path> files;
+			try (Stream<Path> stream = Files.walk(path)) {
+				files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+			}
+
+			for (Path file : files) {
+				HashUtil.update(digest, path.relativize(file) + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis());
+			}
+		}
+	}
+
+	private static void delete(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			List<Path> children;
+			try (Stream<Path> stream = Files.list(path)) {
+				children = stream.collect(Collectors.toList());
+			}
+
+			for (Path child : children) {
+				delete(child);
+			}
+		}
+
+		Files.deleteIfExists(path);
+	}
+
+	private Path getEntry(String name, byte[] input) {
+		MessageDigest digest = HashUtil.newSha1();
+		HashUtil.update(digest, name);
+		String key = HashUtil.toHex(digest.digest(input));
+		return directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+	}
+
+	/**
+	 * @param name The name of the class being transformed.
+	 * @param input The untransformed class bytes.
+	 * @return The cached transformation of the given class, or null if it has to be transformed.
+	 */
+	byte[] get(String name, byte[] input) {
+		Path entry = getEntry(name, input);
+
+		if (Files.isRegularFile(entry)) {
+			try {
+				byte[] out = Files.readAllBytes(entry);
+				hits.incrementAndGet();
+				return out;
+			} catch (IOException e) {
+				LOGGER.debug("Failed to read cached class " + name + ", transforming again", e);
+			}
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores the transformation of the given class, for {@link #get} to return on later launches.
+	 */
+	void put(String name, byte[] input, byte[] output) {
+		Path entry = getEntry(name, input);
+		Path tmp = entry.resolveSibling(entry.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+
+		try {
+			Files.createDirectories(entry.getParent());
+			Files.write(tmp, output);
+			Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOGGER.debug("Failed to cache transformed class " + name, e);
+
+			try {
+				Files.deleteIfExists(tmp);
+			} catch (IOException ignored) {
+				// pass
+			}
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return The number of classes which have been served from the cache.
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of classes which had to be transformed.
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+}
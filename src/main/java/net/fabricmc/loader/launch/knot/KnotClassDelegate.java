@@ -20,26 +20,23 @@ import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.entrypoint.EntrypointTransformer;
 import net.fabricmc.loader.launch.common.FabricLauncherBase;
 import net.fabricmc.loader.transformer.FabricTransformer;
-import net.fabricmc.loader.util.FileSystemUtil;
 import net.fabricmc.loader.util.UrlConversionException;
 import net.fabricmc.loader.util.UrlUtil;
 import org.spongepowered.asm.mixin.transformer.MixinTransformer;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
-import java.net.JarURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.CodeSource;
 import java.security.cert.Certificate;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 class KnotClassDelegate {
@@ -55,11 +52,17 @@ class KnotClassDelegate {
 		}
 	}
 
-	private final Map<String, Metadata> metadataCache = new HashMap<>();
+	/** Per-thread scratch space for reading classes of unknown size, avoids an allocation and copy per class. */
+	private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[32768]);
+	private static final int MAX_POOLED_BUFFER = 1 << 20;
+
+	private final Map<String, Metadata> metadataCache = new ConcurrentHashMap<>();
 	private final KnotClassLoaderInterface itf;
 	private final boolean isDevelopment;
 	private final EnvType envType;
 	private MixinTransformer mixinTransformer;
+	private KnotClassCache classCache;
+	private final KnotMetrics metrics = new KnotMetrics(this);
 	private boolean transformInitialized = false;
 
 	KnotClassDelegate(boolean isDevelopment, EnvType envType, KnotClassLoaderInterface itf) {
@@ -93,6 +96,25 @@ class KnotClassDelegate {
 		return mixinTransformer;
 	}
 
+	KnotClassCache getClassCache() {
+		return classCache;
+	}
+
+	void setClassCache(KnotClassCache classCache) {
+		this.classCache = classCache;
+	}
+
+	KnotMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Reads the manifest and code source of a new classpath entry up front, so defining its classes never has to.
+	 */
+	void addCodeSource(URL url) {
+		getMetadata(url);
+	}
+
 	Metadata getMetadata(String name, URL resourceURL) {
 		if (resourceURL != null) {
 			URL codeSourceURL = null;
@@ -105,63 +127,53 @@ class KnotClassDelegate {
 			}
 
 			if (codeSourceURL != null) {
-				return metadataCache.computeIfAbsent(codeSourceURL.toString(), (codeSourceStr) -> {
-					Manifest manifest = null;
-					CodeSource codeSource = null;
-					Certificate[] certificates = null;
-					URL fCodeSourceUrl = null;
-
-					try {
-						fCodeSourceUrl = new URL(codeSourceStr);
-						Path path = UrlUtil.asPath(fCodeSourceUrl);
-
-						if (Files.isRegularFile(path)) {
-							URLConnection connection = new URL("jar:" + codeSourceStr + "!/").openConnection();
-							if (connection instanceof JarURLConnection) {
-								manifest = ((JarURLConnection) connection).getManifest();
-								certificates = ((JarURLConnection) connection).getCertificates();
-							}
-
-							if (manifest == null) {
-								try (FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(path, false)) {
-									Path manifestPath = jarFs.get().getPath("META-INF/MANIFEST.MF");
-									if (Files.exists(manifestPath)) {
-										try (InputStream stream = Files.newInputStream(manifestPath)) {
-											manifest = new Manifest(stream);
-
-											// TODO
-											/* JarEntry codeEntry = codeSourceJar.getJarEntry(filename);
-											if (codeEntry != null) {
-												codeSource = new CodeSource(codeSourceURL, codeEntry.getCodeSigners());
-											} */
-										}
-									}
-								}
-							}
-						}
-					} catch (IOException | FileSystemNotFoundException | UrlConversionException e) {
-						if (FabricLauncherBase.getLauncher().isDevelopment()) {
-							System.err.println("Failed to load manifest: " + e);
-							e.printStackTrace();
-						}
-					}
-
-					if (codeSource == null) {
-						codeSource = new CodeSource(fCodeSourceUrl, certificates);
-					}
-
-					return new Metadata(manifest, codeSource);
-				});
+				return getMetadata(codeSourceURL);
 			}
 		}
 
 		return Metadata.EMPTY;
 	}
 
+	Metadata getMetadata(URL codeSourceURL) {
+		String key = codeSourceURL.toString();
+		Metadata metadata = metadataCache.get(key);
+
+		if (metadata == null) {
+			// Loaded outside of the map so other jars are never held up, the odd duplicate read is harmless
+			metadata = loadMetadata(codeSourceURL);
+			Metadata existing = metadataCache.putIfAbsent(key, metadata);
+			if (existing != null) metadata = existing;
+		}
+
+		return metadata;
+	}
+
+	private static Metadata loadMetadata(URL codeSourceURL) {
+		Manifest manifest = null;
+
+		try {
+			Path path = UrlUtil.asPath(codeSourceURL);
+
+			if (Files.isRegularFile(path)) {
+				try (JarFile jar = new JarFile(path.toFile(), false)) {
+					manifest = jar.getManifest();
+				}
+			}
+		} catch (IOException | UnsupportedOperationException | UrlConversionException e) {
+			if (FabricLauncherBase.getLauncher().isDevelopment()) {
+				System.err.println("Failed to load manifest: " + e);
+				e.printStackTrace();
+			}
+		}
+
+		// TODO: code signers
+		return new Metadata(manifest, new CodeSource(codeSourceURL, (Certificate[]) null));
+	}
+
 	public byte[] loadClassData(String name, boolean resolve) {
 		if (!transformInitialized) {
 			try {
-				return getClassByteArray(name, true);
+				return readClass(name);
 			} catch (IOException e) {
 				throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
 			}
@@ -169,24 +181,60 @@ class KnotClassDelegate {
 
 		// Blocking Fabric Loader classes is no longer necessary here as they don't exist on the modding class loader
 		if (/* !"net.fabricmc.api.EnvType".equals(name) && !name.startsWith("net.fabricmc.loader.") && */ !name.startsWith("org.apache.logging.log4j")) {
+			long start = System.nanoTime(), nestedTime = KnotMetrics.getNestedTime();
 			byte[] input = EntrypointTransformer.INSTANCE.transform(name);
+			metrics.record(KnotMetrics.Stage.ENTRYPOINT_TRANSFORMER, start, nestedTime);
+
 			if (input == null) {
 				try {
-					input = getClassByteArray(name, true);
+					input = readClass(name);
 				} catch (IOException e) {
 					throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
 				}
 			}
 
 			if (input != null) {
-				byte[] b = FabricTransformer.transform(isDevelopment, envType, name, input);
-				b = getMixinTransformer().transformClassBytes(name, name, b);
-				return b;
+				if (classCache != null) {
+					byte[] cached = classCache.get(name, input);
+					if (cached != null) return cached;
+				}
+
+				return transform(name, input);
 			}
 		}
 
 		// We haven't found a class by now, but it could be injected by Mixin
-		return getMixinTransformer().transformClassBytes(name, name, null);
+		long start = System.nanoTime(), nestedTime = KnotMetrics.getNestedTime();
+		byte[] b = getMixinTransformer().transformClassBytes(name, name, null);
+		metrics.record(KnotMetrics.Stage.MIXIN, start, nestedTime);
+		return b;
+	}
+
+	private byte[] readClass(String name) throws IOException {
+		long start = System.nanoTime(), nestedTime = KnotMetrics.getNestedTime();
+		byte[] b = getClassByteArray(name, true);
+		metrics.record(KnotMetrics.Stage.RESOURCE_LOOKUP, start, nestedTime);
+		metrics.recordRead(b);
+		return b;
+	}
+
+	private byte[] transform(String name, byte[] input) {
+		long start = System.nanoTime(), nestedTime = KnotMetrics.getNestedTime();
+		byte[] b = FabricTransformer.transform(isDevelopment, envType, name, input);
+		metrics.record(KnotMetrics.Stage.FABRIC_TRANSFORMER, start, nestedTime);
+
+		start = System.nanoTime();
+		nestedTime = KnotMetrics.getNestedTime();
+		byte[] out = getMixinTransformer().transformClassBytes(name, name, b);
+		metrics.record(KnotMetrics.Stage.MIXIN, start, nestedTime);
+
+		// Mixin hands back what it was given unless it applied something, and applying mixins does more than change the
+		// target's bytes (such as registering generated inner classes), so targets always have to go through it again
+		if (classCache != null && out == b && out != null) {
+			classCache.put(name, input, out);
+		}
+
+		return out;
 	}
 
 	String getClassFileName(String name) {
@@ -195,20 +243,42 @@ class KnotClassDelegate {
 
 	public byte[] getClassByteArray(String name, boolean skipOriginalLoader) throws IOException {
 		String classFile = getClassFileName(name);
+
+		// Indexed entries know their exact size, so can be read without any intermediate buffering
+		KnotClasspathIndex.Resource resource = itf.getIndexedResource(classFile);
+		if (resource != null) {
+			return resource.getBytes();
+		}
+
 		InputStream inputStream = itf.getResourceAsStream(classFile, skipOriginalLoader);
 		if (inputStream == null) {
 			return null;
 		}
 
-		int a = inputStream.available();
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(a < 32 ? 32768 : a);
-		byte[] buffer = new byte[8192];
+		try {
+			return readFully(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	private static byte[] readFully(InputStream inputStream) throws IOException {
+		byte[] buffer = READ_BUFFER.get();
+		int read = 0;
 		int len;
-		while ((len = inputStream.read(buffer)) > 0) {
-			outputStream.write(buffer, 0, len);
+
+		while ((len = inputStream.read(buffer, read, buffer.length - read)) > 0) {
+			read += len;
+
+			if (read == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+				if (buffer.length <= MAX_POOLED_BUFFER) {
+					READ_BUFFER.set(buffer);
+				}
+			}
 		}
 
-		inputStream.close();
-		return outputStream.toByteArray();
+		return Arrays.copyOf(buffer, read);
 	}
 }
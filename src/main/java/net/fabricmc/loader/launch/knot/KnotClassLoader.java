@@ -45,6 +45,7 @@ class KnotClassLoader extends SecureClassLoader implements KnotClassLoaderInterf
 	private final DynamicURLClassLoader urlLoader;
 	private final ClassLoader originalLoader;
 	private final KnotClassDelegate delegate;
+	private volatile KnotClasspathIndex index;
 
 	KnotClassLoader(boolean isDevelopment, EnvType envType) {
 		super(new DynamicURLClassLoader(new URL[0]));
@@ -65,11 +66,50 @@ class KnotClassLoader extends SecureClassLoader implements KnotClassLoaderInterf
 		}
 	}
 
+	@Override
+	public void indexClasspath() {
+		index = KnotClasspathIndex.build(urlLoader.getURLs());
+	}
+
+	@Override
+	public KnotClasspathIndex.Resource getIndexedResource(String name) {
+		KnotClasspathIndex index = this.index;
+		return index != null ? index.get(name) : null;
+	}
+
+	private URL findResource0(String name) {
+		KnotClasspathIndex.Resource resource = getIndexedResource(name);
+
+		if (resource != null) {
+			try {
+				return resource.getUrl();
+			} catch (IOException e) {
+				// Fall back to the URL loader
+			}
+		}
+
+		return urlLoader.getResource(name);
+	}
+
+	private InputStream findResourceAsStream0(String name) {
+		KnotClasspathIndex.Resource resource = getIndexedResource(name);
+
+		if (resource != null) {
+			try {
+				return resource.getInputStream();
+			} catch (IOException e) {
+				// Fall back to the URL loader
+			}
+		}
+
+		return urlLoader.getResourceAsStream(name);
+	}
+
 	@Override
 	public URL getResource(String name) {
 		Objects.requireNonNull(name);
 
-		URL url = urlLoader.getResource(name);
+		URL url = findResource0(name);
 		if (url == null) {
 			url = originalLoader.getResource(name);
 		}
@@ -80,7 +120,7 @@ class KnotClassLoader extends SecureClassLoader implements KnotClassLoaderInterf
 	public InputStream getResourceAsStream(String name) {
 		Objects.requireNonNull(name);
 
-		InputStream inputStream = urlLoader.getResourceAsStream(name);
+		InputStream inputStream = findResourceAsStream0(name);
 		if (inputStream == null) {
 			inputStream = originalLoader.getResourceAsStream(name);
 		}
@@ -135,42 +175,56 @@ class KnotClassLoader extends SecureClassLoader implements KnotClassLoaderInterf
 
 	@Override
 	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-		synchronized (getClassLoadingLock(name)) {
-			Class<?> c = findLoadedClass(name);
-
-			if (c == null) {
-				byte[] input = delegate.loadClassData(name, resolve);
-				if (input != null) {
-					KnotClassDelegate.Metadata metadata = delegate.getMetadata(name, urlLoader.getResource(delegate.getClassFileName(name)));
-
-					int pkgDelimiterPos = name.lastIndexOf('.');
-					if (pkgDelimiterPos > 0) {
-						// TODO: package definition stub
-						String pkgString = name.substring(0, pkgDelimiterPos);
-						if (getPackage(pkgString) == null) {
-							definePackage(pkgString, null, null, null, null, null, null, null);
+		KnotMetrics metrics = delegate.getMetrics();
+		long start = System.nanoTime(), nestedTime = KnotMetrics.getNestedTime();
+
+		try {
+			synchronized (getClassLoadingLock(name)) {
+				metrics.record(KnotMetrics.Stage.LOCK_WAIT, start, nestedTime);
+				Class<?> c = findLoadedClass(name);
+
+				if (c == null) {
+					byte[] input = delegate.loadClassData(name, resolve);
+					if (input != null) {
+						String fileName = delegate.getClassFileName(name);
+						KnotClasspathIndex.Resource resource = getIndexedResource(fileName);
+						KnotClassDelegate.Metadata metadata = resource != null ? delegate.getMetadata(resource.getSourceUrl()) : delegate.getMetadata(name, urlLoader.getResource(fileName));
+
+						int pkgDelimiterPos = name.lastIndexOf('.');
+						if (pkgDelimiterPos > 0) {
+							// TODO: package definition stub
+							String pkgString = name.substring(0, pkgDelimiterPos);
+							if (getPackage(pkgString) == null) {
+								definePackage(pkgString, null, null, null, null, null, null, null);
+							}
 						}
+
+						long defineStart = System.nanoTime(), defineNestedTime = KnotMetrics.getNestedTime();
+						c = defineClass(name, input, 0, input.length, metadata.codeSource);
+						metrics.record(KnotMetrics.Stage.DEFINE_CLASS, defineStart, defineNestedTime);
+						metrics.recordDefine(metadata.codeSource, input.length);
 					}
+				}
 
-					c = defineClass(name, input, 0, input.length, metadata.codeSource);
+				if (c == null) {
+					c = originalLoader.loadClass(name);
 				}
-			}
 
-			if (c == null) {
-				c = originalLoader.loadClass(name);
-			}
+				if (resolve) {
+					resolveClass(c);
+				}
 
-			if (resolve) {
-				resolveClass(c);
+				return c;
 			}
-
-			return c;
+		} finally {
+			KnotMetrics.recordLoad(start, nestedTime);
 		}
 	}
 
 	@Override
 	public void addURL(URL url) {
 		urlLoader.addURL(url);
+		delegate.addCodeSource(url);
 	}
 
 	static {
@@ -179,7 +233,7 @@ class KnotClassLoader extends SecureClassLoader implements KnotClassLoaderInterf
 
 	@Override
 	public InputStream getResourceAsStream(String classFile, boolean skipOriginalLoader) throws IOException {
-		InputStream inputStream = urlLoader.getResourceAsStream(classFile);
+		InputStream inputStream = findResourceAsStream0(classFile);
 		if (inputStream == null && !skipOriginalLoader) {
 			inputStream = originalLoader.getResourceAsStream(classFile);
 		}
@@ -24,5 +24,7 @@ interface KnotClassLoaderInterface {
 	KnotClassDelegate getDelegate();
 	boolean isClassLoaded(String name);
 	void addURL(URL url);
+	void indexClasspath();
+	KnotClasspathIndex.Resource getIndexedResource(String name);
 	InputStream getResourceAsStream(String filename, boolean skipOriginalLoader) throws IOException;
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.launch.knot;
+
+import net.fabricmc.loader.util.FileSystemUtil;
+import net.fabricmc.loader.util.UrlConversionException;
+import net.fabricmc.loader.util.UrlUtil;
+import net.fabricmc.loader.util.ZipDirectory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A snapshot of which classpath entry provides each resource, so lookups don't have to probe every jar in turn.
+ *
+ * <p>Local jars have their central directory read through a memory mapping, and their entries are read straight out
+ * of the mapping afterwards. Anything the index doesn't know about (including anything added to the classpath after
+ * it was built) is left for the caller to find the slow way.</p>
+ */
+final class KnotClasspathIndex {
+	interface Resource {
+		/**
+		 * @return The URL {@link java.net.URLClassLoader} would give for this resource.
+		 */
+		URL getUrl() throws IOException;
+
+		/**
+		 * @return The URL of the classpath entry holding this resource.
+		 */
+		URL getSourceUrl();
+
+		InputStream getInputStream() throws IOException;
+
+		/**
+		 * @return The full contents of the resource.
+		 */
+		byte[] getBytes() throws IOException;
+	}
+
+	private static final Logger LOGGER = LogManager.getFormatterLogger("KnotClassLoader");
+
+	private final Map<String, Resource> resources;
+	private final int indexedSources;
+
+	private KnotClasspathIndex(Map<String, Resource> resources, int indexedSources) {
+		this.resources = resources;
+		this.indexedSources = indexedSources;
+	}
+
+	static KnotClasspathIndex build(URL[] urls) {
+		long time = System.currentTimeMillis();
+		Map<String, Resource> resources = new HashMap<>();
+		int indexedSources = 0;
+
+		for (URL url : urls) {
+			try {
+				index(url, resources);
+				indexedSources++;
+			} catch (IOException | UrlConversionException | RuntimeException e) {
+				// Later entries can't be indexed without potentially shadowing this one
+				LOGGER.debug("Unable to index " + url + ", leaving it and the remaining " + (urls.length - indexedSources - 1) + " classpath entries unindexed", e);
+				break;
+			}
+		}
+
+		LOGGER.debug("Indexed %d resources from %d classpath entries in %d ms", resources.size(), indexedSources, System.currentTimeMillis() - time);
+		return new KnotClasspathIndex(resources, indexedSources);
+	}
+
+	private static void index(URL url, Map<String, Resource> resources) throws IOException, UrlConversionException {
+		Path path = UrlUtil.asPath(url);
+
+		if (Files.isDirectory(path)) {
+			try (Stream<Path> stream = Files.walk(path)) {
+				Iterator<Path> it = stream.iterator();
+
+				while (it.hasNext()) {
+					Path file = it.next();
+					if (file == path) continue;
+
+					StringBuilder name = new StringBuilder();
+					for (Path part : path.relativize(file)) {
+						if (name.length() > 0) name.append('/');
+						name.append(part.toString());
+					}
+					if (Files.isDirectory(file)) name.append('/');
+
+					resources.putIfAbsent(name.toString(), new PathResource(url, file));
+				}
+			}
+		} else if (Files.isRegularFile(path)) {
+			if (path.getFileSystem() != FileSystems.getDefault() || !MappedJar.index(url, path, resources)) {
+				indexZipFileSystem(url, path, resources);
+			}
+		} else {
+			throw new IOException(path + " is neither a file or directory");
+		}
+	}
+
+	private static void indexZipFileSystem(URL url, Path path, Map<String, Resource> resources) throws IOException {
+		// We never close here, the resources keep using the file system
+		FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(path, false);
+		Path root = jarFs.get().getRootDirectories().iterator().next();
+
+		try (Stream<Path> stream = Files.walk(root)) {
+			Iterator<Path> it = stream.iterator();
+
+			while (it.hasNext()) {
+				Path file = it.next();
+				if (file == root) continue;
+
+				String name = root.relativize(file).toString();
+				if (Files.isDirectory(file) && !name.endsWith("/")) name += '/';
+				resources.putIfAbsent(name, new PathResource(url, file));
+			}
+		}
+	}
+
+	/**
+	 * @return The number of classpath entries which have been indexed, counting from the first.
+	 */
+	int getIndexedSourceCount() {
+		return indexedSources;
+	}
+
+	/**
+	 * @return The resource if it is in the index, or null if it needs to be looked up another way.
+	 */
+	Resource get(String name) {
+		return resources.get(name);
+	}
+
+	private static final class PathResource implements Resource {
+		private final URL source;
+		private final Path path;
+
+		PathResource(URL source, Path path) {
+			this.source = source;
+			this.path = path;
+		}
+
+		@Override
+		public URL getUrl() throws IOException {
+			return path.toUri().toURL();
+		}
+
+		@Override
+		public URL getSourceUrl() {
+			return source;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return Files.newInputStream(path);
+		}
+
+		@Override
+		public byte[] getBytes() throws IOException {
+			return Files.readAllBytes(path);
+		}
+	}
+
+	private static final class MappedJar {
+		private final URL source;
+		private final URL base;
+		private final ZipDirectory directory;
+
+		private MappedJar(URL source, ZipDirectory directory) throws MalformedURLException {
+			this.source = source;
+			this.base = new URL("jar:" + source + "!/");
+			this.directory = directory;
+		}
+
+		/**
+		 * @return Whether the jar could be indexed, if not it needs to be read some other way
+		 */
+		static boolean index(URL url, Path path, Map<String, Resource> resources) throws IOException {
+			MappedByteBuffer buffer;
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE) return false;
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+
+			ZipDirectory directory;
+
+			try {
+				directory = ZipDirectory.read(buffer, null);
+			} catch (IOException e) {
+				LOGGER.debug("Unable to read the central directory of " + path + ", opening it instead", e);
+				return false;
+			}
+
+			for (ZipDirectory.Entry entry : directory.getEntries()) {
+				// Leave anything which can't be read straight out of the mapping to the JDK
+				if (entry.encrypted || (entry.method != ZipDirectory.STORED && entry.method != ZipDirectory.DEFLATED)
+						|| entry.size > Integer.MAX_VALUE || entry.compressedSize > Integer.MAX_VALUE) {
+					return false;
+				}
+			}
+
+			MappedJar jar = new MappedJar(url, directory);
+
+			for (ZipDirectory.Entry entry : directory.getEntries()) {
+				resources.putIfAbsent(entry.name, new MappedEntry(jar, entry));
+			}
+
+			return true;
+		}
+	}
+
+	private static final class MappedEntry implements Resource {
+		private final MappedJar jar;
+		private final ZipDirectory.Entry entry;
+
+		MappedEntry(MappedJar jar, ZipDirectory.Entry entry) {
+			this.jar = jar;
+			this.entry = entry;
+		}
+
+		@Override
+		public URL getUrl() throws IOException {
+			return new URL(jar.base, encodePath(entry.name));
+		}
+
+		@Override
+		public URL getSourceUrl() {
+			return jar.source;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			InputStream in = new ByteBufferInputStream(jar.directory.getRawData(entry));
+			return entry.method == ZipDirectory.DEFLATED ? new InflaterInputStream(in, new Inflater(true)) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					inf.end();
+				}
+			} : in;
+		}
+
+		@Override
+		public byte[] getBytes() throws IOException {
+			try {
+				return jar.directory.readData(entry);
+			} catch (IOException e) {
+				throw new IOException("Failed to read " + entry.name + " from " + jar.source, e);
+			}
+		}
+	}
+
+	/**
+	 * Percent-encode anything in an entry name which isn't safe to put straight into a URL path.
+	 */
+	private static String encodePath(String name) {
+		StringBuilder out = null;
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "/-_.!~*'()$&+,;=@".indexOf(c) >= 0) {
+				if (out != null) out.append(c);
+			} else {
+				if (out == null) {
+					out = new StringBuilder(name.length() + 16).append(name, 0, i);
+				}
+
+				int end = i + 1;
+				if (Character.isHighSurrogate(c) && end < name.length()) end++;
+
+				for (byte b : name.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+					out.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16))).append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+				}
+
+				i = end - 1;
+			}
+		}
+
+		return out != null ? out.toString() : name;
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public long skip(long n) {
+			int skip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skip);
+			return skip;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
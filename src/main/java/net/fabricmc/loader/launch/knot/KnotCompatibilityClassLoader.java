@@ -25,7 +25,10 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.function.UnaryOperator;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,13 +37,16 @@ import org.apache.logging.log4j.Logger;
 class KnotCompatibilityClassLoader extends URLClassLoader implements KnotClassLoaderInterface {
 	private static final Logger LOGGER = LogManager.getFormatterLogger("KnotClassLoader");
 	private final KnotClassLoader realLoader;
-	private final UnaryOperator<Path> deobfuscator;
+	private final UnaryOperator<List<Path>> deobfuscator;
+	/** Jars added since anything was last looked up, to be deobfuscated together. */
+	private final List<URL> pendingUrls = new ArrayList<>();
+	private volatile boolean hasPendingUrls;
 
-	KnotCompatibilityClassLoader(boolean isDevelopment, EnvType envType, UnaryOperator<Path> deobfuscator) {
+	KnotCompatibilityClassLoader(boolean isDevelopment, EnvType envType, UnaryOperator<List<Path>> deobfuscator) {
 		this(new KnotClassLoader(isDevelopment, envType), deobfuscator);
 	}
 
-	private KnotCompatibilityClassLoader(KnotClassLoader parent, UnaryOperator<Path> deobfuscator) {
+	private KnotCompatibilityClassLoader(KnotClassLoader parent, UnaryOperator<List<Path>> deobfuscator) {
 		super(new URL[0], parent);
 		this.realLoader = parent;
 		this.deobfuscator = deobfuscator;
@@ -58,6 +64,7 @@ class KnotCompatibilityClassLoader extends URLClassLoader implements KnotClassLo
 
 	@Override
 	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		addPendingUrls();
 		return realLoader.loadClass(name, resolve);
 	}
 
@@ -69,34 +76,102 @@ class KnotCompatibilityClassLoader extends URLClassLoader implements KnotClassLo
 			return;
 		}
 
-		try {
-			Path input = UrlUtil.asPath(url);
-			assert Files.exists(input);
+		// Mods tend to be added one after another, so wait until something is looked up to remap them all at once
+		synchronized (pendingUrls) {
+			pendingUrls.add(url);
+			hasPendingUrls = true;
+		}
+	}
 
-			Path remappedInput = deobfuscator.apply(input);
-			realLoader.addURL(UrlUtil.asUrl(remappedInput));
-		} catch (Throwable t) {
-			LOGGER.debug("Unable to find file representation of " + url + ", skipping deobfuscation", t);
-			realLoader.addURL(url);
+	/**
+	 * Deobfuscates every jar added since the last lookup as a single batch, and only then adds them to the real loader.
+	 */
+	private void addPendingUrls() {
+		if (!hasPendingUrls) return;
+
+		// Held throughout, so nothing is looked up before the jars are actually added
+		synchronized (pendingUrls) {
+			if (pendingUrls.isEmpty()) return;
+
+			List<URL> urls = new ArrayList<>(pendingUrls);
+			pendingUrls.clear();
+			hasPendingUrls = false;
+
+			// What each URL is replaced with, kept in the order they were added as the first jar with a class wins
+			URL[] added = urls.toArray(new URL[0]);
+			List<Path> inputs = new ArrayList<>(added.length);
+			List<Integer> inputIndices = new ArrayList<>(added.length);
+
+			for (int i = 0; i < added.length; i++) {
+				try {
+					Path input = UrlUtil.asPath(added[i]);
+					assert Files.exists(input);
+
+					inputs.add(input);
+					inputIndices.add(i);
+				} catch (Throwable t) {
+					LOGGER.debug("Unable to find file representation of " + added[i] + ", skipping deobfuscation", t);
+				}
+			}
+
+			if (!inputs.isEmpty()) {
+				try {
+					List<Path> remapped = deobfuscator.apply(inputs);
+
+					for (int i = 0; i < remapped.size(); i++) {
+						added[inputIndices.get(i)] = UrlUtil.asUrl(remapped.get(i));
+					}
+				} catch (Throwable t) {
+					LOGGER.warn("Unable to deobfuscate " + inputs.size() + " jars together, trying each on its own", t);
+
+					// Only the jars which fail by themselves are left as they were
+					for (int i = 0; i < inputs.size(); i++) {
+						try {
+							added[inputIndices.get(i)] = UrlUtil.asUrl(deobfuscator.apply(Collections.singletonList(inputs.get(i))).get(0));
+						} catch (Throwable t2) {
+							LOGGER.warn("Unable to deobfuscate " + inputs.get(i) + ", skipping deobfuscation", t2);
+						}
+					}
+				}
+			}
+
+			for (URL url : added) {
+				realLoader.addURL(url);
+			}
 		}
 	}
 
+	@Override
+	public void indexClasspath() {
+		addPendingUrls();
+		realLoader.indexClasspath();
+	}
+
+	@Override
+	public KnotClasspathIndex.Resource getIndexedResource(String name) {
+		addPendingUrls();
+		return realLoader.getIndexedResource(name);
+	}
+
 	static {
 		registerAsParallelCapable();
 	}
 
 	@Override
 	public Enumeration<URL> getResources(String name) throws IOException {
+		addPendingUrls();
 		return realLoader.getResources(name);
 	}
 	
 	@Override
 	public URL getResource(String name) {
+		addPendingUrls();
 		return realLoader.getResource(name);
 	}
 	
 	@Override
 	public InputStream getResourceAsStream(String classFile, boolean skipOriginalLoader) throws IOException {
+		addPendingUrls();
 		return realLoader.getResourceAsStream(classFile, skipOriginalLoader);
 	}
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.launch.knot;
+
+import net.fabricmc.loader.FabricLoader;
+import net.fabricmc.loader.ModContainer;
+import net.fabricmc.loader.transformer.FabricTransformer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.security.CodeSource;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what Knot does while loading classes, and times each stage of it.
+ *
+ * <p>Stage times only count time spent in that stage itself: loading a class often means loading others first (such
+ * as its superclass while it is defined, or classes a mixin needs while it is applied), and any time spent loading
+ * those is taken off the stage which needed them rather than being counted twice. Each stage also keeps a histogram of
+ * how long it took, in power of two microsecond buckets.</p>
+ *
+ * <p>Counting takes a few timestamps per class, so it is always on. Fetch the metrics with {@link Knot#getMetrics()},
+ * or over JMX with {@code -Dfabric.loader.jmx=true}.</p>
+ */
+public final class KnotMetrics implements KnotMetricsMXBean {
+	public static final String OBJECT_NAME = "net.fabricmc.loader:type=KnotMetrics";
+	private static final Logger LOGGER = LogManager.getFormatterLogger("KnotMetrics");
+	private static final int HISTOGRAM_BUCKETS = 24;
+	private static final String UNKNOWN_SOURCE = "unknown";
+	/** The time spent loading classes which were needed during the current one, to take out of its stage times. */
+	private static final ThreadLocal<long[]> NESTED_TIME = ThreadLocal.withInitial(() -> new long[1]);
+
+	public enum Stage {
+		/** Waiting for another thread to finish loading the same class. */
+		LOCK_WAIT,
+		/** Finding and reading class files. */
+		RESOURCE_LOOKUP,
+		ENTRYPOINT_TRANSFORMER,
+		FABRIC_TRANSFORMER,
+		MIXIN,
+		DEFINE_CLASS
+	}
+
+	private static final class Timer {
+		final LongAdder count = new LongAdder();
+		final LongAdder time = new LongAdder();
+		final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		void record(long nanos) {
+			count.increment();
+			time.add(nanos);
+			histogram.incrementAndGet(Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000)));
+		}
+	}
+
+	private static final class Source {
+		final LongAdder classes = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+	}
+
+	private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+	private final Map<String, Source> sources = new ConcurrentHashMap<>();
+	private final LongAdder bytesRead = new LongAdder();
+	private final KnotClassDelegate delegate;
+
+	KnotMetrics(KnotClassDelegate delegate) {
+		this.delegate = delegate;
+
+		for (Stage stage : Stage.values()) {
+			timers.put(stage, new Timer());
+		}
+	}
+
+	void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			LOGGER.warn("Failed to register class loading metrics with JMX", e);
+		}
+	}
+
+	/**
+	 * @return The time spent in loads nested in the current one so far, to pass to {@link #record} at the end of a stage.
+	 */
+	static long getNestedTime() {
+		return NESTED_TIME.get()[0];
+	}
+
+	/**
+	 * Records a class load finishing, so any stage of an outer load which was waiting on it doesn't count its time.
+	 */
+	static void recordLoad(long start, long nestedTime) {
+		// Replacing rather than adding, as this load's time already includes the loads nested in it
+		NESTED_TIME.get()[0] = nestedTime + System.nanoTime() - start;
+	}
+
+	void record(Stage stage, long start, long nestedTime) {
+		timers.get(stage).record(System.nanoTime() - start - (getNestedTime() - nestedTime));
+	}
+
+	void recordRead(byte[] bytes) {
+		if (bytes != null) {
+			bytesRead.add(bytes.length);
+		}
+	}
+
+	void recordDefine(CodeSource codeSource, int length) {
+		String key = codeSource != null && codeSource.getLocation() != null ? codeSource.getLocation().toString() : UNKNOWN_SOURCE;
+		Source source = sources.computeIfAbsent(key, (k) -> new Source());
+		source.classes.increment();
+		source.bytes.add(length);
+	}
+
+	public long getTime(Stage stage) {
+		return timers.get(stage).time.sum();
+	}
+
+	public long getCount(Stage stage) {
+		return timers.get(stage).count.sum();
+	}
+
+	/**
+	 * @return How many times the given stage took each length of time: the first bucket counts times under a microsecond,
+	 * and each bucket {@code i} after that times from 2<sup>i-1</sup> up to 2<sup>i</sup> microseconds, with the last
+	 * also counting anything longer.
+	 */
+	public long[] getHistogram(Stage stage) {
+		AtomicLongArray histogram = timers.get(stage).histogram;
+		long[] ret = new long[histogram.length()];
+
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = histogram.get(i);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public long[] getStageHistogram(String stage) {
+		return getHistogram(Stage.valueOf(stage));
+	}
+
+	@Override
+	public Map<String, Long> getStageTimes() {
+		Map<String, Long> ret = new TreeMap<>();
+
+		for (Stage stage : Stage.values()) {
+			ret.put(stage.name(), getTime(stage));
+		}
+
+		return ret;
+	}
+
+	@Override
+	public Map<String, Long> getStageCounts() {
+		Map<String, Long> ret = new TreeMap<>();
+
+		for (Stage stage : Stage.values()) {
+			ret.put(stage.name(), getCount(stage));
+		}
+
+		return ret;
+	}
+
+	@Override
+	public long getClassesDefined() {
+		return sources.values().stream().mapToLong((source) -> source.classes.sum()).sum();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesDefined() {
+		return sources.values().stream().mapToLong((source) -> source.bytes.sum()).sum();
+	}
+
+	/**
+	 * @return The number of classes defined from each jar or directory on the classpath, by URL.
+	 */
+	public Map<String, Long> getClassesDefinedBySource() {
+		Map<String, Long> ret = new TreeMap<>();
+		sources.forEach((key, source) -> ret.put(key, source.classes.sum()));
+		return ret;
+	}
+
+	/**
+	 * @return The number of classes defined from each mod, by mod ID. Classes from outside of any mod are counted by the
+	 * URL they came from instead.
+	 */
+	@Override
+	public Map<String, Long> getClassesDefinedByMod() {
+		return byMod(getClassesDefinedBySource());
+	}
+
+	public Map<String, Long> getBytesDefinedBySource() {
+		Map<String, Long> ret = new TreeMap<>();
+		sources.forEach((key, source) -> ret.put(key, source.bytes.sum()));
+		return ret;
+	}
+
+	@Override
+	public Map<String, Long> getBytesDefinedByMod() {
+		return byMod(getBytesDefinedBySource());
+	}
+
+	private static Map<String, Long> byMod(Map<String, Long> bySource) {
+		Map<String, String> modsBySource = new HashMap<>();
+
+		for (ModContainer mod : FabricLoader.INSTANCE.getModContainers()) {
+			modsBySource.put(mod.getOriginUrl().toString(), mod.getInfo().getId());
+		}
+
+		Map<String, Long> ret = new TreeMap<>();
+		bySource.forEach((source, value) -> ret.merge(modsBySource.getOrDefault(source, source), value, Long::sum));
+		return ret;
+	}
+
+	@Override
+	public int getClassCacheHitCount() {
+		KnotClassCache classCache = delegate.getClassCache();
+		return classCache != null ? classCache.getHitCount() : 0;
+	}
+
+	@Override
+	public int getClassCacheMissCount() {
+		KnotClassCache classCache = delegate.getClassCache();
+		return classCache != null ? classCache.getMissCount() : 0;
+	}
+
+	@Override
+	public int getEnvironmentScanCount() {
+		return FabricTransformer.getEnvironmentScanCount();
+	}
+
+	@Override
+	public int getEnvironmentScanSkipCount() {
+		return FabricTransformer.getEnvironmentScanSkipCount();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.launch.knot;
+
+import java.util.Map;
+
+/**
+ * The parts of {@link KnotMetrics} published over JMX, registered as {@value KnotMetrics#OBJECT_NAME} when
+ * {@code -Dfabric.loader.jmx=true} is set.
+ */
+public interface KnotMetricsMXBean {
+	long getClassesDefined();
+	long getBytesRead();
+	long getBytesDefined();
+
+	/**
+	 * @return The time spent in each {@link KnotMetrics.Stage}, in nanoseconds, by stage name.
+	 */
+	Map<String, Long> getStageTimes();
+
+	/**
+	 * @return How many times each {@link KnotMetrics.Stage} was entered, by stage name.
+	 */
+	Map<String, Long> getStageCounts();
+
+	Map<String, Long> getClassesDefinedByMod();
+	Map<String, Long> getBytesDefinedByMod();
+
+	/**
+	 * @return How many times the given stage took each length of time, see {@link KnotMetrics#getHistogram}.
+	 */
+	long[] getStageHistogram(String stage);
+
+	int getClassCacheHitCount();
+	int getClassCacheMissCount();
+	int getEnvironmentScanCount();
+	int getEnvironmentScanSkipCount();
+}
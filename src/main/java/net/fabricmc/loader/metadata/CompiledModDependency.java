@@ -0,0 +1,27 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.metadata;
+
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.util.version.VersionIntervalSet;
+
+public interface CompiledModDependency extends ModDependency {
+	/**
+	 * @return The versions with a packed key that match, or null if the predicates couldn't be compiled.
+	 */
+	VersionIntervalSet getVersionIntervals();
+}
@@ -19,6 +19,7 @@ package net.fabricmc.loader.metadata;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.metadata.ModMetadata;
 
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -40,4 +41,11 @@ public interface LoaderModMetadata extends ModMetadata {
 	Collection<String> getOldInitializers();
 	List<EntrypointMetadata> getEntrypoints(String type);
 	Collection<String> getEntrypointKeys();
+
+	/**
+	 * Drops whatever isn't needed to run the mod, reading it again from the fabric.mod.json in the given root if it is
+	 * asked for later.
+	 */
+	default void compact(Path root) {
+	}
 }
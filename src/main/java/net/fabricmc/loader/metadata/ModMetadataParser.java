@@ -16,64 +16,219 @@
 
 package net.fabricmc.loader.metadata;
 
-import com.google.gson.*;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import net.fabricmc.loader.FabricLoader;
 import net.fabricmc.loader.api.Version;
 import net.fabricmc.loader.util.version.VersionDeserializer;
+import net.fabricmc.loader.util.version.VersionParsingException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Reads "fabric.mod.json" files straight into their metadata, without building a tree of the JSON first.
+ *
+ * <p>The schema version has to be known before anything else can be read, so files which don't start with it (and
+ * schema version 0 files, which don't have one at all) are skimmed for it first.</p>
+ */
 public class ModMetadataParser {
 	public static final int LATEST_VERSION = 1;
 
-	private static final Gson GSON_V1 = new GsonBuilder()
-		.registerTypeAdapter(Version.class, new VersionDeserializer())
-		.registerTypeAdapter(ModMetadataV1.JarEntry.class, new ModMetadataV1.JarEntry.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.IconEntry.class, new ModMetadataV1.IconEntry.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.LicenseEntry.class, new ModMetadataV1.LicenseEntry.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.Person.class, new ModMetadataV1.Person.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.DependencyContainer.class, new ModMetadataV1.DependencyContainer.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.MixinEntry.class, new ModMetadataV1.MixinEntry.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.EntrypointContainer.class, new ModMetadataV1.EntrypointContainer.Deserializer())
-		.registerTypeAdapter(ModMetadataV1.Environment.class, new ModMetadataV1.Environment.Deserializer())
-		.create();
-
-	private static final Gson GSON_V0 = new GsonBuilder()
-		.registerTypeAdapter(Version.class, new VersionDeserializer())
-		.registerTypeAdapter(ModMetadataV0.Side.class, new ModMetadataV0.Side.Deserializer())
-		.registerTypeAdapter(ModMetadataV0.Mixins.class, new ModMetadataV0.Mixins.Deserializer())
-		.registerTypeAdapter(ModMetadataV0.Links.class, new ModMetadataV0.Links.Deserializer())
-		.registerTypeAdapter(ModMetadataV0.Dependency.class, new ModMetadataV0.Dependency.Deserializer())
-		.registerTypeAdapter(ModMetadataV0.Person.class, new ModMetadataV0.Person.Deserializer())
-		.create();
-
 	private static final JsonParser JSON_PARSER = new JsonParser();
+	/** Shares the strings which many mods repeat, such as mod IDs, version ranges and entrypoint names. */
+	private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+	static String intern(String s) {
+		return STRINGS.intern(s);
+	}
+
+	/**
+	 * Replaces the given map's keys with their interned copies.
+	 */
+	static void internKeys(Map<String, String> map) {
+		Map<String, String> copy = new HashMap<>(map);
+		map.clear();
+
+		for (Map.Entry<String, String> entry : copy.entrySet()) {
+			map.put(intern(entry.getKey()), entry.getValue());
+		}
+	}
+
+	static JsonReader newReader(byte[] json) {
+		JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+		reader.setLenient(true);
+		return reader;
+	}
+
+	/**
+	 * @return The value of the given top level member, or null if there isn't one.
+	 */
+	private static JsonElement findMember(byte[] json, String name) throws IOException {
+		JsonElement found = null;
+
+		try (JsonReader reader = newReader(json)) {
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				if (reader.nextName().equals(name)) {
+					found = JSON_PARSER.parse(reader);
+				} else {
+					reader.skipValue();
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private static LoaderModMetadata getMod(FabricLoader loader, byte[] json) throws IOException {
+		int schemaVersion;
+
+		try (JsonReader reader = newReader(json)) {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				return null;
+			}
 
-	private static LoaderModMetadata getMod(FabricLoader loader, JsonObject object) {
-		if (!object.has("schemaVersion")) {
-			return GSON_V0.fromJson(object, ModMetadataV0.class);
-		} else {
-			//noinspection SwitchStatementWithTooFewBranches
-			switch (object.get("schemaVersion").getAsInt()) {
-				case 1:
-					return GSON_V1.fromJson(object, ModMetadataV1.class);
-				default:
-					loader.getLogger().warn("Mod ID " + (object.has("id") ? object.get("id").getAsString() : "<unknown>") + " has invalid schema version: " + object.get("schemaVersion").getAsInt());
-					return null;
+			reader.beginObject();
+
+			if (reader.hasNext() && reader.nextName().equals("schemaVersion")) {
+				schemaVersion = reader.nextInt();
+				if (schemaVersion == 1) return ModMetadataV1.read(reader, json);
+			} else {
+				JsonElement element = findMember(json, "schemaVersion");
+				schemaVersion = element != null ? element.getAsInt() : 0;
+
+				if (element == null || schemaVersion == 1) {
+					// Start reading again from the top, now the schema version is known
+					try (JsonReader restarted = newReader(json)) {
+						restarted.beginObject();
+						return element == null ? ModMetadataV0.read(restarted) : ModMetadataV1.read(restarted, json);
+					}
+				}
 			}
 		}
+
+		JsonElement id = findMember(json, "id");
+		loader.getLogger().warn("Mod ID " + (id != null ? id.getAsString() : "<unknown>") + " has invalid schema version: " + schemaVersion);
+		return null;
+	}
+
+	public static LoaderModMetadata[] getMods(FabricLoader loader, byte[] json) {
+		LoaderModMetadata metadata;
+
+		try {
+			metadata = getMod(loader, json);
+		} catch (IOException | IllegalStateException | NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+
+		return metadata != null ? new LoaderModMetadata[] { metadata } : new LoaderModMetadata[0];
 	}
 
 	public static LoaderModMetadata[] getMods(FabricLoader loader, InputStream in) {
-		JsonElement el = JSON_PARSER.parse(new InputStreamReader(in));
-		if (el.isJsonObject()) {
-			LoaderModMetadata metadata = getMod(loader, el.getAsJsonObject());
-			if (metadata != null) {
-				return new LoaderModMetadata[] { metadata };
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+
+		try {
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				out.write(buffer, 0, len);
 			}
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+
+		return getMods(loader, out.toByteArray());
+	}
+
+	/**
+	 * Reads a string, or a number or boolean as one, as Gson would.
+	 */
+	static String readString(JsonReader reader, String what) throws IOException {
+		switch (reader.peek()) {
+			case STRING:
+			case NUMBER:
+				return reader.nextString();
+			case BOOLEAN:
+				return Boolean.toString(reader.nextBoolean());
+			default:
+				throw new JsonParseException(what + " must be a string!");
+		}
+	}
+
+	/**
+	 * Reads either a single string or an array of them.
+	 */
+	static List<String> readStringList(JsonReader reader, String what) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+			return Collections.singletonList(readString(reader, what));
 		}
 
-		return new LoaderModMetadata[0];
+		List<String> list = new ArrayList<>();
+		reader.beginArray();
+
+		while (reader.hasNext()) {
+			list.add(readString(reader, what));
+		}
+
+		reader.endArray();
+		return list;
+	}
+
+	static Map<String, String> readStringMap(JsonReader reader, String what) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			throw new JsonParseException(what + " must be an object!");
+		}
+
+		Map<String, String> map = new HashMap<>();
+		reader.beginObject();
+
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			map.put(key, readString(reader, what + " value"));
+		}
+
+		reader.endObject();
+		return map;
+	}
+
+	static Version readVersion(JsonReader reader) throws IOException {
+		if (reader.peek() != JsonToken.STRING && reader.peek() != JsonToken.NUMBER) {
+			throw new JsonParseException("Version must be a non-empty string!");
+		}
+
+		try {
+			return VersionDeserializer.deserialize(reader.nextString());
+		} catch (VersionParsingException e) {
+			throw new JsonParseException(e);
+		}
+	}
+
+	/**
+	 * Skips a null value, which is treated the same as the member being left out.
+	 *
+	 * @return Whether there was a null to skip.
+	 */
+	static boolean skipNull(JsonReader reader) throws IOException {
+		if (reader.peek() != JsonToken.NULL) return false;
+
+		reader.nextNull();
+		return true;
 	}
 }
@@ -18,13 +18,17 @@ package net.fabricmc.loader.metadata;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
-import com.google.gson.*;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.metadata.ContactInformation;
 import net.fabricmc.loader.api.metadata.ModDependency;
 import net.fabricmc.loader.api.Version;
+import net.fabricmc.loader.util.version.VersionIntervalSet;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -58,6 +62,97 @@ public class ModMetadataV0 implements LoaderModMetadata {
 	private Person[] contributors = new Person[0];
 	private String license = "";
 
+	/**
+	 * Reads the members of a fabric.mod.json object, after its opening brace.
+	 */
+	static ModMetadataV0 read(JsonReader reader) throws IOException {
+		ModMetadataV0 metadata = new ModMetadataV0();
+
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			if (ModMetadataParser.skipNull(reader)) continue;
+
+			switch (key) {
+				case "id":
+					metadata.id = ModMetadataParser.intern(ModMetadataParser.readString(reader, "Mod ID"));
+					break;
+				case "version":
+					metadata.version = ModMetadataParser.readVersion(reader);
+					break;
+				case "requires":
+					metadata.requires = DependencyMap.read(reader);
+					break;
+				case "conflicts":
+					metadata.conflicts = DependencyMap.read(reader);
+					break;
+				case "languageAdapter":
+					metadata.languageAdapter = ModMetadataParser.readString(reader, "Language adapter");
+					break;
+				case "mixins":
+					metadata.mixins = Mixins.read(reader);
+					break;
+				case "side":
+					metadata.side = Side.read(reader);
+					break;
+				case "lazilyLoaded":
+					metadata.lazilyLoaded = Boolean.parseBoolean(ModMetadataParser.readString(reader, "lazilyLoaded"));
+					break;
+				case "initializer":
+					metadata.initializer = ModMetadataParser.readString(reader, "Initializer");
+					break;
+				case "initializers":
+					if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+						throw new JsonParseException("Expected initializers to be an array");
+					}
+
+					metadata.initializers = ModMetadataParser.readStringList(reader, "Initializer").toArray(new String[0]);
+					break;
+				case "name":
+					metadata.name = ModMetadataParser.readString(reader, "Mod name");
+					break;
+				case "description":
+					metadata.description = ModMetadataParser.readString(reader, "Mod description");
+					break;
+				case "links":
+					metadata.links = Links.read(reader);
+					break;
+				case "recommends":
+					metadata.recommends = DependencyMap.read(reader);
+					break;
+				case "authors":
+					metadata.authors = readPeople(reader);
+					break;
+				case "contributors":
+					metadata.contributors = readPeople(reader);
+					break;
+				case "license":
+					metadata.license = ModMetadataParser.readString(reader, "License");
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+		return metadata;
+	}
+
+	private static Person[] readPeople(JsonReader reader) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+			throw new JsonParseException("Expected people to be an array");
+		}
+
+		List<Person> people = new ArrayList<>();
+		reader.beginArray();
+
+		while (reader.hasNext()) {
+			people.add(Person.read(reader));
+		}
+
+		reader.endArray();
+		return people.toArray(new Person[0]);
+	}
+
 	@Override
 	public int getSchemaVersion() {
 		return 0;
@@ -236,41 +331,40 @@ public class ModMetadataV0 implements LoaderModMetadata {
 			return server;
 		}
 
-		public static class Deserializer implements JsonDeserializer<Mixins> {
-			@Override
-			public Mixins deserialize(JsonElement element, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				Mixins mixins = new Mixins();
-
-				if (element.isJsonObject()) {
-					JsonObject object = element.getAsJsonObject();
-					mixins.client = getStringArray(object, "client");
-					mixins.common = getStringArray(object, "common");
-					mixins.server = getStringArray(object, "server");
-				} else {
-					throw new JsonParseException("Expected mixins to be an object.");
-				}
+		static Mixins read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Expected mixins to be an object.");
+			}
 
+			Mixins mixins = new Mixins();
+			reader.beginObject();
 
-				return mixins;
-			}
+			while (reader.hasNext()) {
+				String name = reader.nextName();
 
-			private String[] getStringArray(JsonObject object, String name) throws JsonParseException {
-				JsonElement element = object.get(name);
-				if (element == null || element.isJsonNull()) {
-					return new String[0];
-				} else if (element.isJsonPrimitive()) {
-					return new String[]{ element.getAsString() };
-				} else if (element.isJsonArray()) {
-					JsonArray array = element.getAsJsonArray();
-					String[] strings = new String[array.size()];
-					for (int i = 0; i < array.size(); i++) {
-						strings[i] = array.get(i).getAsString();
-					}
-					return strings;
-				} else {
+				if (ModMetadataParser.skipNull(reader)) {
+					continue;
+				} else if (reader.peek() == JsonToken.BEGIN_OBJECT) {
 					throw new JsonParseException("Expected " + name + " to be a string or an array of strings");
 				}
+
+				switch (name) {
+					case "client":
+						mixins.client = ModMetadataParser.readStringList(reader, name).toArray(new String[0]);
+						break;
+					case "common":
+						mixins.common = ModMetadataParser.readStringList(reader, name).toArray(new String[0]);
+						break;
+					case "server":
+						mixins.server = ModMetadataParser.readStringList(reader, name).toArray(new String[0]);
+						break;
+					default:
+						reader.skipValue();
+				}
 			}
+
+			reader.endObject();
+			return mixins;
 		}
 	}
 
@@ -281,40 +375,71 @@ public class ModMetadataV0 implements LoaderModMetadata {
 			super(map);
 		}
 
-		public static class Deserializer implements JsonDeserializer<Links> {
-			@Override
-			public Links deserialize(JsonElement element, Type resultType, JsonDeserializationContext context) throws JsonParseException {
-				Map<String, String> map = new HashMap<>();
-
-				if (element.isJsonObject()) {
-					JsonObject object = element.getAsJsonObject();
-					if (object.has("homepage")) map.put("homepage", object.get("homepage").getAsString());
-					if (object.has("issues")) map.put("issues", object.get("issues").getAsString());
-					if (object.has("sources")) map.put("sources", object.get("sources").getAsString());
-				} else if (element.isJsonPrimitive()) {
-					map.put("homepage", element.getAsString());
-				} else {
-					throw new JsonParseException("Expected links to be an object or string");
+		static Links read(JsonReader reader) throws IOException {
+			Map<String, String> map = new HashMap<>();
+
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+
+					if (!ModMetadataParser.skipNull(reader) && (name.equals("homepage") || name.equals("issues") || name.equals("sources"))) {
+						map.put(name, ModMetadataParser.readString(reader, name));
+					} else {
+						reader.skipValue();
+					}
 				}
 
-				return new Links(map);
+				reader.endObject();
+			} else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+				throw new JsonParseException("Expected links to be an object or string");
+			} else {
+				map.put("homepage", ModMetadataParser.readString(reader, "links"));
 			}
+
+			return new Links(map);
 		}
 	}
 
 	public static class DependencyMap extends HashMap<String, Dependency> {
 		private List<ModDependency> modDepList;
 
+		static DependencyMap read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Expected dependencies to be an object");
+			}
+
+			DependencyMap map = new DependencyMap();
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				String id = reader.nextName();
+				if (ModMetadataParser.skipNull(reader)) continue;
+
+				map.put(id, Dependency.read(reader));
+			}
+
+			reader.endObject();
+			return map;
+		}
+
 		Collection<ModDependency> toModDependencies() {
 			if (modDepList == null) {
 				List<ModDependency> list = new ArrayList<>(this.size());
 				for (String s : this.keySet()) {
-					list.add(new ModDependency() {
+					list.add(new CompiledModDependency() {
 						@Override
 						public String getModId() {
 							return s;
 						}
 
+						@Override
+						public VersionIntervalSet getVersionIntervals() {
+							// See Dependency.satisfiedBy
+							return VersionIntervalSet.ALL;
+						}
+
 						@Override
 						public boolean matches(Version version) {
 							return DependencyMap.this.get(s).satisfiedBy(version);
@@ -378,53 +503,44 @@ public class ModMetadataV0 implements LoaderModMetadata {
 			return "[" + Joiner.on(", ").join(versionMatchers) + "]";
 		}
 
-		public static class Deserializer implements JsonDeserializer<Dependency> {
-			private String[] deserializeVersionMatchers(JsonElement versionEl) {
-				String[] versionMatchers;
-
-				if (versionEl.isJsonPrimitive()) {
-					versionMatchers = new String[] { versionEl.getAsString() };
-				} else if (versionEl.isJsonArray()) {
-					JsonArray array = versionEl.getAsJsonArray();
-					versionMatchers = new String[array.size()];
-					for (int i = 0; i < array.size(); i++) {
-						versionMatchers[i] = array.get(i).getAsString();
-					}
-				} else {
-					throw new JsonParseException("Expected version to be a string or array");
-				}
-
-				return versionMatchers;
+		private static String[] readVersionMatchers(JsonReader reader) throws IOException {
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Expected version to be a string or array");
 			}
 
-			@Override
-			public Dependency deserialize(JsonElement element, Type resultType, JsonDeserializationContext context) throws JsonParseException {
-				if (element.isJsonObject()) {
-					JsonObject object = element.getAsJsonObject();
-
-					String[] versionMatchers;
-					Side side = Side.UNIVERSAL;
-
-					if (object.has("side")) {
-						JsonElement sideEl = object.get("side");
-						side = context.deserialize(sideEl, Side.class);
-					}
+			return ModMetadataParser.readStringList(reader, "Version").toArray(new String[0]);
+		}
 
-					if (object.has("version")) {
-						JsonElement versionEl = object.get("version");
-						versionMatchers = deserializeVersionMatchers(versionEl);
+		static Dependency read(JsonReader reader) throws IOException {
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				String[] versionMatchers = null;
+				Side side = Side.UNIVERSAL;
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+
+					if (ModMetadataParser.skipNull(reader)) {
+						continue;
+					} else if (name.equals("side")) {
+						side = Side.read(reader);
+					} else if (name.equals("version")) {
+						versionMatchers = readVersionMatchers(reader);
 					} else {
-						throw new JsonParseException("Missing version element");
+						reader.skipValue();
 					}
+				}
+
+				reader.endObject();
 
-					return new Dependency(versionMatchers, side);
-				} else if (element.isJsonPrimitive() || element.isJsonArray()) {
-					String[] versionMatchers = deserializeVersionMatchers(element);
-					return new Dependency(versionMatchers, Side.UNIVERSAL);
+				if (versionMatchers == null) {
+					throw new JsonParseException("Missing version element");
 				}
 
-				throw new JsonParseException("Expected dependency to be an object");
+				return new Dependency(versionMatchers, side);
 			}
+
+			return new Dependency(readVersionMatchers(reader), Side.UNIVERSAL);
 		}
 	}
 
@@ -454,44 +570,56 @@ public class ModMetadataV0 implements LoaderModMetadata {
 			return contact;
 		}
 
-		public static class Deserializer implements JsonDeserializer<Person> {
-
-			private static final Pattern WEBSITE_PATTERN = Pattern.compile("\\((.+)\\)");
-			private static final Pattern EMAIL_PATTERN = Pattern.compile("<(.+)>");
+		private static final Pattern WEBSITE_PATTERN = Pattern.compile("\\((.+)\\)");
+		private static final Pattern EMAIL_PATTERN = Pattern.compile("<(.+)>");
+
+		static Person read(JsonReader reader) throws IOException {
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				String name = "", email = "", website = "";
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					String key = reader.nextName();
+
+					if (ModMetadataParser.skipNull(reader)) {
+						continue;
+					} else if (key.equals("name")) {
+						name = ModMetadataParser.readString(reader, "Person name");
+					} else if (key.equals("email")) {
+						email = ModMetadataParser.readString(reader, "Person email");
+					} else if (key.equals("website")) {
+						website = ModMetadataParser.readString(reader, "Person website");
+					} else {
+						reader.skipValue();
+					}
+				}
 
-			@Override
-			public Person deserialize(JsonElement element, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
-				if (element.isJsonPrimitive()) {
-					String person = element.getAsString();
-					List<String> parts = Lists.newArrayList(person.split(" "));
+				reader.endObject();
+				return new Person(name, email, website);
+			} else if (reader.peek() == JsonToken.BEGIN_ARRAY || reader.peek() == JsonToken.NULL) {
+				throw new RuntimeException("Expected person to be a string");
+			}
 
-					String name, email = "", website = "";
+			String person = ModMetadataParser.readString(reader, "Person");
+			List<String> parts = Lists.newArrayList(person.split(" "));
 
-					Matcher websiteMatcher = WEBSITE_PATTERN.matcher(parts.get(parts.size() - 1));
-					if (websiteMatcher.matches()) {
-						website = websiteMatcher.group(1);
-						parts.remove(parts.size() - 1);
-					}
+			String name, email = "", website = "";
 
-					Matcher emailMatcher = EMAIL_PATTERN.matcher(parts.get(parts.size() - 1));
-					if (emailMatcher.matches()) {
-						email = emailMatcher.group(1);
-						parts.remove(parts.size() - 1);
-					}
+			Matcher websiteMatcher = WEBSITE_PATTERN.matcher(parts.get(parts.size() - 1));
+			if (websiteMatcher.matches()) {
+				website = websiteMatcher.group(1);
+				parts.remove(parts.size() - 1);
+			}
 
-					name = String.join(" ", parts);
+			Matcher emailMatcher = EMAIL_PATTERN.matcher(parts.get(parts.size() - 1));
+			if (emailMatcher.matches()) {
+				email = emailMatcher.group(1);
+				parts.remove(parts.size() - 1);
+			}
 
-					return new Person(name, email, website);
-				} else if (element.isJsonObject()) {
-					JsonObject object = element.getAsJsonObject();
-					String name = object.has("name") ? object.get("name").getAsString() : "";
-					String email = object.has("email") ? object.get("email").getAsString() : "";
-					String website = object.has("website") ? object.get("website").getAsString() : "";
+			name = String.join(" ", parts);
 
-					return new Person(name, email, website);
-				}
-				throw new RuntimeException("Expected person to be a string");
-			}
+			return new Person(name, email, website);
 		}
 	}
 
@@ -516,10 +644,13 @@ public class ModMetadataV0 implements LoaderModMetadata {
 			return this == SERVER;
 		}
 
-		public static class Deserializer implements JsonDeserializer<Side> {
-			@Override
-			public Side deserialize(JsonElement element, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
-				return valueOf(element.getAsString().toUpperCase(Locale.ROOT));
+		static Side read(JsonReader reader) throws IOException {
+			String s = ModMetadataParser.readString(reader, "Side");
+
+			try {
+				return valueOf(s.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new JsonParseException("Invalid side: " + s + "!", e);
 			}
 		}
 	}
@@ -16,18 +16,26 @@
 
 package net.fabricmc.loader.metadata;
 
-import com.google.common.base.Joiner;
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.Version;
 import net.fabricmc.loader.api.metadata.ContactInformation;
 import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.util.version.VersionIntervalSet;
 import net.fabricmc.loader.util.version.VersionParsingException;
 import net.fabricmc.loader.util.version.VersionPredicateParser;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -40,31 +48,184 @@ public class ModMetadataV1 implements LoaderModMetadata {
 
 	// Optional (mod loading)
 	private Environment environment = Environment.UNIVERSAL;
-	private EntrypointContainer entrypoints = new EntrypointContainer();
+	private EntrypointContainer entrypoints = EntrypointContainer.EMPTY;
 	private JarEntry[] jars = new JarEntry[0];
 	private MixinEntry[] mixins = new MixinEntry[0];
 
 	// Optional (dependency resolution)
-	private DependencyContainer depends = new DependencyContainer();
-	private DependencyContainer recommends = new DependencyContainer();
-	private DependencyContainer suggests = new DependencyContainer();
-	private DependencyContainer conflicts = new DependencyContainer();
-	private DependencyContainer breaks = new DependencyContainer();
-
-	// Optional (metadata)
-	private String name;
-	private String description = "";
-	private Person[] authors = new Person[0];
-	private Person[] contributors = new Person[0];
-	private Map<String, String> contact = new HashMap<>();
-	private LicenseEntry license = new LicenseEntry();
-	private IconEntry icon = new IconEntry();
+	private DependencyContainer depends = DependencyContainer.EMPTY;
+	private DependencyContainer recommends = DependencyContainer.EMPTY;
+	private DependencyContainer suggests = DependencyContainer.EMPTY;
+	private DependencyContainer conflicts = DependencyContainer.EMPTY;
+	private DependencyContainer breaks = DependencyContainer.EMPTY;
+
+	// Optional (metadata), read again from the mod when needed once it has been compacted
+	private volatile Description description = new Description();
+	private SoftReference<Description> descriptionCache;
 
 	// Optional (language adapter providers)
-	private Map<String, String> languageAdapters = new HashMap<>();
+	private Map<String, String> languageAdapters = Collections.emptyMap();
 
 	// Optional (custom)
-	private Map<String, JsonElement> custom = new HashMap<>();
+	private CustomContainer custom = CustomContainer.EMPTY;
+
+	// Where to read the file again from, the file itself is only kept if there are custom values to read from it
+	private byte[] json;
+	private Path root;
+
+	/**
+	 * Reads the members of a fabric.mod.json object, after its opening brace.
+	 *
+	 * @param json The whole file, which is kept to read any custom values from later.
+	 */
+	static ModMetadataV1 read(JsonReader reader, byte[] json) throws IOException {
+		ModMetadataV1 metadata = new ModMetadataV1();
+		Description description = metadata.description;
+
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			if (ModMetadataParser.skipNull(reader)) continue;
+
+			switch (key) {
+				case "id":
+					metadata.id = ModMetadataParser.intern(ModMetadataParser.readString(reader, "Mod ID"));
+					break;
+				case "version":
+					metadata.version = ModMetadataParser.readVersion(reader);
+					break;
+				case "environment":
+					metadata.environment = Environment.read(reader);
+					break;
+				case "entrypoints":
+					metadata.entrypoints = EntrypointContainer.read(reader);
+					break;
+				case "jars":
+					metadata.jars = readArray(reader, "JAR entries", JarEntry::read).toArray(new JarEntry[0]);
+					break;
+				case "mixins":
+					metadata.mixins = readArray(reader, "Mixin entries", MixinEntry::read).toArray(new MixinEntry[0]);
+					break;
+				case "depends":
+					metadata.depends = DependencyContainer.read(reader);
+					break;
+				case "recommends":
+					metadata.recommends = DependencyContainer.read(reader);
+					break;
+				case "suggests":
+					metadata.suggests = DependencyContainer.read(reader);
+					break;
+				case "conflicts":
+					metadata.conflicts = DependencyContainer.read(reader);
+					break;
+				case "breaks":
+					metadata.breaks = DependencyContainer.read(reader);
+					break;
+				case "name":
+					description.name = ModMetadataParser.readString(reader, "Mod name");
+					break;
+				case "description":
+					description.description = ModMetadataParser.readString(reader, "Mod description");
+					break;
+				case "authors":
+					description.authors = readArray(reader, "Authors", Person::read).toArray(new Person[0]);
+					break;
+				case "contributors":
+					description.contributors = readArray(reader, "Contributors", Person::read).toArray(new Person[0]);
+					break;
+				case "contact":
+					description.contact = new MapBackedContactInformation(ModMetadataParser.readStringMap(reader, "Contact information"));
+					break;
+				case "license":
+					description.license = LicenseEntry.read(reader);
+					break;
+				case "icon":
+					description.icon = IconEntry.read(reader);
+					break;
+				case "languageAdapters":
+					metadata.languageAdapters = ModMetadataParser.readStringMap(reader, "Language adapters");
+					ModMetadataParser.internKeys(metadata.languageAdapters);
+					break;
+				case "custom":
+					metadata.custom = CustomContainer.read(reader);
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+
+		reader.endObject();
+
+		if (metadata.custom != CustomContainer.EMPTY) {
+			metadata.json = json;
+		}
+
+		return metadata;
+	}
+
+	@Override
+	public synchronized void compact(Path root) {
+		this.root = root;
+		json = null;
+		descriptionCache = new SoftReference<>(description);
+		description = null;
+	}
+
+	/**
+	 * @return The contents of this mod's fabric.mod.json, which will have to be read again if it has been compacted.
+	 */
+	private synchronized byte[] getJson() {
+		if (json != null) return json;
+
+		try {
+			return Files.readAllBytes(root.resolve("fabric.mod.json"));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read fabric.mod.json of mod " + id + " again!", e);
+		}
+	}
+
+	private Description getDescriptionFields() {
+		Description ret = description;
+		if (ret != null) return ret;
+
+		synchronized (this) {
+			ret = descriptionCache.get();
+
+			if (ret == null) {
+				byte[] json = getJson();
+
+				try (JsonReader reader = ModMetadataParser.newReader(json)) {
+					reader.beginObject();
+					ret = read(reader, json).description;
+				} catch (IOException e) {
+					throw new RuntimeException("Failed to read fabric.mod.json of mod " + id + " again!", e);
+				}
+
+				descriptionCache = new SoftReference<>(ret);
+			}
+
+			return ret;
+		}
+	}
+
+	private interface ElementReader<T> {
+		T read(JsonReader reader) throws IOException;
+	}
+
+	private static <T> List<T> readArray(JsonReader reader, String what, ElementReader<T> elementReader) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+			throw new JsonParseException(what + " must be an array!");
+		}
+
+		List<T> list = new ArrayList<>();
+		reader.beginArray();
+
+		while (reader.hasNext()) {
+			list.add(elementReader.read(reader));
+		}
+
+		reader.endArray();
+		return list;
+	}
 
 	@Override
 	public String getType() {
@@ -122,6 +283,7 @@ public class ModMetadataV1 implements LoaderModMetadata {
 
 	@Override
 	public String getName() {
+		String name = getDescriptionFields().name;
 		if (name == null || name.isEmpty()) {
 			return id;
 		}
@@ -130,31 +292,33 @@ public class ModMetadataV1 implements LoaderModMetadata {
 
 	@Override
 	public String getDescription() {
-		return description;
+		return getDescriptionFields().description;
 	}
 
 	@Override
 	public Collection<net.fabricmc.loader.api.metadata.Person> getAuthors() {
-		return Arrays.asList(authors);
+		return Arrays.asList(getDescriptionFields().authors);
 	}
 
 	@Override
 	public Collection<net.fabricmc.loader.api.metadata.Person> getContributors() {
-		return Arrays.asList(contributors);
+		return Arrays.asList(getDescriptionFields().contributors);
 	}
 
 	@Override
 	public ContactInformation getContact() {
-		return new MapBackedContactInformation(contact);
+		return getDescriptionFields().contact;
 	}
 
 	@Override
 	public Collection<String> getLicense() {
-		return license.entries;
+		return getDescriptionFields().license.entries;
 	}
 
 	@Override
 	public Optional<String> getIconPath(int size) {
+		IconEntry icon = getDescriptionFields().icon;
+
 		if (icon.iconMap != null && !icon.iconMap.isEmpty()) {
 			int iconValue = -1;
 
@@ -173,12 +337,12 @@ public class ModMetadataV1 implements LoaderModMetadata {
 
 	@Override
 	public boolean containsCustomElement(String key) {
-		return custom.containsKey(key);
+		return custom.keys.contains(key);
 	}
 
 	@Override
 	public JsonElement getCustomElement(String key) {
-		return custom.get(key);
+		return custom.get(key, this::getJson);
 	}
 
 	@Override
@@ -211,82 +375,170 @@ public class ModMetadataV1 implements LoaderModMetadata {
 		return breaks.dependencies;
 	}
 
-	public static class DependencyContainer {
-		private final Map<String, List<String>> matcherStrings = new HashMap<>();
-		private final List<ModDependency> dependencies = new ArrayList<>();
+	/**
+	 * The descriptive metadata, which isn't needed for loading the mod.
+	 */
+	static class Description {
+		private String name;
+		private String description = "";
+		private Person[] authors = new Person[0];
+		private Person[] contributors = new Person[0];
+		private MapBackedContactInformation contact = new MapBackedContactInformation(Collections.emptyMap());
+		private LicenseEntry license = LicenseEntry.EMPTY;
+		private IconEntry icon = IconEntry.EMPTY;
+	}
 
-		public static class Deserializer implements JsonDeserializer<DependencyContainer> {
-			@Override
-			public DependencyContainer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				if (!json.isJsonObject()) {
-					throw new RuntimeException("Dependency container must be an object!");
-				}
+	/**
+	 * The values in the "custom" object, which are only parsed from the original file when they are first asked for.
+	 */
+	static class CustomContainer {
+		static final CustomContainer EMPTY = new CustomContainer(Collections.emptySet());
 
-				DependencyContainer ctr = new DependencyContainer();
-				JsonObject obj = json.getAsJsonObject();
+		private final Set<String> keys;
+		private final Map<String, JsonElement> elements = new ConcurrentHashMap<>();
 
-				for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-					List<String> matcherStringList = new ArrayList<>();
+		private CustomContainer(Set<String> keys) {
+			this.keys = keys;
+		}
 
-					if (entry.getValue().isJsonPrimitive()) {
-						matcherStringList.add(entry.getValue().getAsString());
-					} else if (entry.getValue().isJsonArray()) {
-						JsonArray array = entry.getValue().getAsJsonArray();
-						array.forEach((e) -> matcherStringList.add(e.getAsString()));
-					} else {
-						throw new RuntimeException("Dependency version range must be a string or string array!");
-					}
+		static CustomContainer read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Custom values must be an object!");
+			}
 
-					String id = entry.getKey();
-					ctr.matcherStrings.put(id, matcherStringList);
-
-					String depAsStr;
-					{
-						StringBuilder builder = new StringBuilder("{");
-						builder.append(id);
-						builder.append(" @ [");
-						for (int i = 0; i < matcherStringList.size(); i++) {
-							if (i > 0) {
-								builder.append(" || ");
+			Set<String> keys = new HashSet<>();
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				keys.add(ModMetadataParser.intern(reader.nextName()));
+				reader.skipValue();
+			}
+
+			reader.endObject();
+			return keys.isEmpty() ? EMPTY : new CustomContainer(keys);
+		}
+
+		JsonElement get(String key, Supplier<byte[]> json) {
+			if (!keys.contains(key)) return null;
+
+			return elements.computeIfAbsent(key, (k) -> {
+				JsonElement element = null;
+
+				try (JsonReader reader = ModMetadataParser.newReader(json.get())) {
+					reader.beginObject();
+
+					// The last custom object counts, as it does for everything else
+					while (reader.hasNext()) {
+						if (!reader.nextName().equals("custom") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+							reader.skipValue();
+							continue;
+						}
+
+						reader.beginObject();
+
+						while (reader.hasNext()) {
+							if (reader.nextName().equals(k)) {
+								element = new JsonParser().parse(reader);
+							} else {
+								reader.skipValue();
 							}
-							builder.append(matcherStringList.get(i));
 						}
-						builder.append("]}");
 
-						depAsStr = builder.toString();
+						reader.endObject();
 					}
+				} catch (IOException e) {
+					throw new RuntimeException("Failed to read custom value " + k + "!", e);
+				}
 
-					ctr.dependencies.add(new ModDependency() {
-						@Override
-						public String getModId() {
-							return id;
-						}
+				return element;
+			});
+		}
+	}
 
-						@Override
-						public boolean matches(Version version) {
-							for (String s : matcherStringList) {
-								try {
-									if (VersionPredicateParser.matches(version, s)) {
-										return true;
-									}
-								} catch (VersionParsingException e) {
-									e.printStackTrace();
-									return false;
-								}
-							}
+	public static class DependencyContainer {
+		static final DependencyContainer EMPTY = new DependencyContainer(Collections.emptyList());
 
-							return false;
-						}
+		private final List<ModDependency> dependencies;
 
-						@Override
-						public String toString() {
-							return depAsStr;
-						}
-					});
+		private DependencyContainer(List<ModDependency> dependencies) {
+			this.dependencies = dependencies;
+		}
+
+		static DependencyContainer read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Dependency container must be an object!");
+			}
+
+			List<ModDependency> dependencies = new ArrayList<>();
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				String id = ModMetadataParser.intern(reader.nextName());
+
+				if (reader.peek() == JsonToken.BEGIN_OBJECT || reader.peek() == JsonToken.NULL) {
+					throw new JsonParseException("Dependency version range must be a string or string array!");
+				}
+
+				List<String> matchers = ModMetadataParser.readStringList(reader, "Dependency version range");
+				String[] internedMatchers = new String[matchers.size()];
+
+				for (int i = 0; i < internedMatchers.length; i++) {
+					internedMatchers[i] = ModMetadataParser.intern(matchers.get(i));
 				}
 
-				return ctr;
+				dependencies.add(new Dependency(id, internedMatchers, VersionIntervalSet.compile(matchers)));
 			}
+
+			reader.endObject();
+			return dependencies.isEmpty() ? EMPTY : new DependencyContainer(Collections.unmodifiableList(dependencies));
+		}
+	}
+
+	static class Dependency implements CompiledModDependency {
+		private final String id;
+		private final String[] matchers;
+		private final VersionIntervalSet intervals;
+
+		Dependency(String id, String[] matchers, VersionIntervalSet intervals) {
+			this.id = id;
+			this.matchers = matchers;
+			this.intervals = intervals;
+		}
+
+		@Override
+		public String getModId() {
+			return id;
+		}
+
+		@Override
+		public VersionIntervalSet getVersionIntervals() {
+			return intervals;
+		}
+
+		@Override
+		public boolean matches(Version version) {
+			if (intervals != null) {
+				long key = VersionIntervalSet.getKey(version);
+				if (key != VersionIntervalSet.NO_KEY) return intervals.contains(key);
+			}
+
+			for (String s : matchers) {
+				try {
+					if (VersionPredicateParser.matches(version, s)) {
+						return true;
+					}
+				} catch (VersionParsingException e) {
+					e.printStackTrace();
+					return false;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "{" + id + " @ [" + String.join(" || ", matchers) + "]}";
 		}
 	}
 
@@ -304,31 +556,38 @@ public class ModMetadataV1 implements LoaderModMetadata {
 			return contact;
 		}
 
-		public static class Deserializer implements JsonDeserializer<Person> {
-			@Override
-			public Person deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				Person person = new Person();
+		static Person read(JsonReader reader) throws IOException {
+			Person person = new Person();
 
-				if (json.isJsonObject()) {
-					JsonObject obj = json.getAsJsonObject();
-					if (!obj.has("name")) {
-						throw new JsonParseException("Person object must have a 'name' field!");
-					}
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
 
-					person.name = obj.get("name").getAsString();
-					if (obj.has("contact")) {
-						person.contact = new MapBackedContactInformation(
-							context.deserialize(obj.get("contact"), TypeToken.getParameterized(HashMap.class, String.class, String.class).getType())
-						);
+				while (reader.hasNext()) {
+					String key = reader.nextName();
+
+					if (ModMetadataParser.skipNull(reader)) {
+						continue;
+					} else if (key.equals("name")) {
+						person.name = ModMetadataParser.readString(reader, "Person name");
+					} else if (key.equals("contact")) {
+						person.contact = new MapBackedContactInformation(ModMetadataParser.readStringMap(reader, "Contact information"));
+					} else {
+						reader.skipValue();
 					}
-				} else if (json.isJsonPrimitive()) {
-					person.name = json.getAsString();
-				} else {
-					throw new JsonParseException("Person type must be an object or string!");
 				}
 
-				return person;
+				reader.endObject();
+
+				if (person.name == null) {
+					throw new JsonParseException("Person object must have a 'name' field!");
+				}
+			} else if (reader.peek() == JsonToken.BEGIN_ARRAY || reader.peek() == JsonToken.NULL) {
+				throw new JsonParseException("Person type must be an object or string!");
+			} else {
+				person.name = ModMetadataParser.readString(reader, "Person");
 			}
+
+			return person;
 		}
 	}
 
@@ -340,70 +599,81 @@ public class ModMetadataV1 implements LoaderModMetadata {
 			return file;
 		}
 
-		public static class Deserializer implements JsonDeserializer<JarEntry> {
-			@Override
-			public JarEntry deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				JarEntry entry = new JarEntry();
-				if (json.isJsonObject()) {
-					JsonObject obj = json.getAsJsonObject();
-					if (!obj.has("file")) {
-						throw new JsonParseException("Missing mandatory key 'file' in JAR entry!");
-					}
+		static JarEntry read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Invalid type for JAR entry!");
+			}
+
+			JarEntry entry = new JarEntry();
+			reader.beginObject();
 
-					entry.file = obj.get("file").getAsString();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("file") && !ModMetadataParser.skipNull(reader)) {
+					entry.file = ModMetadataParser.readString(reader, "JAR file");
 				} else {
-					throw new JsonParseException("Invalid type for JAR entry!");
+					reader.skipValue();
 				}
+			}
+
+			reader.endObject();
 
-				return entry;
+			if (entry.file == null) {
+				throw new JsonParseException("Missing mandatory key 'file' in JAR entry!");
 			}
+
+			return entry;
 		}
 	}
 
 	public static class IconEntry {
+		private static final IconEntry EMPTY = new IconEntry();
+
 		private String icon;
 		private SortedMap<Integer, String> iconMap;
 
-		public static class Deserializer implements JsonDeserializer<IconEntry> {
-			@Override
-			public IconEntry deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				IconEntry entry = new IconEntry();
-				if (json.isJsonPrimitive()) {
-					entry.icon = json.getAsString();
-				} else if (json.isJsonObject()) {
-					entry.iconMap = new TreeMap<>(Comparator.naturalOrder());
-
-					JsonObject obj = json.getAsJsonObject();
-					for (Map.Entry<String, JsonElement> e : obj.entrySet()) {
-						int size;
-						try {
-							size = Integer.parseInt(e.getKey());
-						} catch (NumberFormatException ex) {
-							throw new JsonParseException("Could not parse icon size '" + e.getKey() + "'!", ex);
-						}
+		static IconEntry read(JsonReader reader) throws IOException {
+			IconEntry entry = new IconEntry();
 
-						if (size < 1) {
-							throw new JsonParseException("Size must be positive!");
-						} else if (!e.getValue().isJsonPrimitive()) {
-							throw new JsonParseException("Icon value must be a string!");
-						}
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				entry.iconMap = new TreeMap<>(Comparator.naturalOrder());
+				reader.beginObject();
 
-						entry.iconMap.put(size, e.getValue().getAsString());
+				while (reader.hasNext()) {
+					String key = reader.nextName();
+					int size;
+					try {
+						size = Integer.parseInt(key);
+					} catch (NumberFormatException ex) {
+						throw new JsonParseException("Could not parse icon size '" + key + "'!", ex);
 					}
 
-					if (entry.iconMap.isEmpty()) {
-						throw new JsonParseException("Icon object must not be empty!");
+					if (size < 1) {
+						throw new JsonParseException("Size must be positive!");
+					} else if (reader.peek() == JsonToken.BEGIN_OBJECT || reader.peek() == JsonToken.BEGIN_ARRAY || reader.peek() == JsonToken.NULL) {
+						throw new JsonParseException("Icon value must be a string!");
 					}
-				} else {
-					throw new JsonParseException("Icon entry must be an object or string!");
+
+					entry.iconMap.put(size, ModMetadataParser.readString(reader, "Icon value"));
 				}
 
-				return entry;
+				reader.endObject();
+
+				if (entry.iconMap.isEmpty()) {
+					throw new JsonParseException("Icon object must not be empty!");
+				}
+			} else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+				throw new JsonParseException("Icon entry must be an object or string!");
+			} else {
+				entry.icon = ModMetadataParser.readString(reader, "Icon entry");
 			}
+
+			return entry;
 		}
 	}
 
 	public static class EntrypointContainer {
+		private static final EntrypointContainer EMPTY = new EntrypointContainer();
+
 		private final Map<String, List<EntrypointMetadata>> metadataMap = new HashMap<>();
 
 		static class Metadata implements EntrypointMetadata {
@@ -411,7 +681,7 @@ public class ModMetadataV1 implements LoaderModMetadata {
 			private final String value;
 
 			Metadata(String adapter, String value) {
-				this.adapter = adapter;
+				this.adapter = ModMetadataParser.intern(adapter);
 				this.value = value;
 			}
 
@@ -426,43 +696,56 @@ public class ModMetadataV1 implements LoaderModMetadata {
 			}
 		}
 
-		public static class Deserializer implements JsonDeserializer<EntrypointContainer> {
-			@Override
-			public EntrypointContainer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				if (!json.isJsonObject()) {
-					throw new JsonParseException("Entrypoints must be an object!");
-				}
+		static EntrypointContainer read(JsonReader reader) throws IOException {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("Entrypoints must be an object!");
+			}
 
-				JsonObject obj = json.getAsJsonObject();
-				EntrypointContainer ctr = new EntrypointContainer();
+			EntrypointContainer ctr = new EntrypointContainer();
+			reader.beginObject();
 
-				for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-					String key = entry.getKey();
-					List<EntrypointMetadata> metadata = new ArrayList<>();
+			while (reader.hasNext()) {
+				String key = ModMetadataParser.intern(reader.nextName());
 
-					if (entry.getValue().isJsonArray()) {
-						for (JsonElement element : entry.getValue().getAsJsonArray()) {
-							if (element.isJsonObject()) {
-								JsonObject entObj = element.getAsJsonObject();
-								String adapter = entObj.has("adapter") ? entObj.get("adapter").getAsString() : "default";
-								String value = entObj.get("value").getAsString();
+				List<EntrypointMetadata> metadata = readArray(reader, "Entrypoint list", (r) -> {
+					if (r.peek() != JsonToken.BEGIN_OBJECT) {
+						return new Metadata("default", ModMetadataParser.readString(r, "Entrypoint"));
+					}
 
-								metadata.add(new Metadata(adapter, value));
-							} else {
-								metadata.add(new Metadata("default", element.getAsString()));
-							}
+					String adapter = "default";
+					String value = null;
+					r.beginObject();
+
+					while (r.hasNext()) {
+						String name = r.nextName();
+
+						if (ModMetadataParser.skipNull(r)) {
+							continue;
+						} else if (name.equals("adapter")) {
+							adapter = ModMetadataParser.readString(r, "Entrypoint adapter");
+						} else if (name.equals("value")) {
+							value = ModMetadataParser.readString(r, "Entrypoint value");
+						} else {
+							r.skipValue();
 						}
-					} else {
-						throw new JsonParseException("Entrypoint list must be an array!");
 					}
 
-					if (!metadata.isEmpty()) {
-						ctr.metadataMap.computeIfAbsent(key, (t) -> new ArrayList<>()).addAll(metadata);
+					r.endObject();
+
+					if (value == null) {
+						throw new JsonParseException("Missing mandatory key 'value' in entrypoint!");
 					}
-				}
 
-				return ctr;
+					return new Metadata(adapter, value);
+				});
+
+				if (!metadata.isEmpty()) {
+					ctr.metadataMap.computeIfAbsent(key, (t) -> new ArrayList<>()).addAll(metadata);
+				}
 			}
+
+			reader.endObject();
+			return ctr.metadataMap.isEmpty() ? EMPTY : ctr;
 		}
 	}
 
@@ -470,28 +753,38 @@ public class ModMetadataV1 implements LoaderModMetadata {
 		private String config;
 		private Environment environment = Environment.UNIVERSAL;
 
-		public static class Deserializer implements JsonDeserializer<MixinEntry> {
-			@Override
-			public MixinEntry deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				MixinEntry entry = new MixinEntry();
-				if (json.isJsonPrimitive()) {
-					entry.config = json.getAsString();
-				} else if (json.isJsonObject()) {
-					JsonObject obj = json.getAsJsonObject();
-					if (!obj.has("config")) {
-						throw new JsonParseException("Missing mandatory key 'config' in mixin entry!");
-					}
+		static MixinEntry read(JsonReader reader) throws IOException {
+			MixinEntry entry = new MixinEntry();
 
-					entry.config = obj.get("config").getAsString();
-					if (obj.has("environment")) {
-						entry.environment = context.deserialize(obj.get("environment"), Environment.class);
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					String key = reader.nextName();
+
+					if (ModMetadataParser.skipNull(reader)) {
+						continue;
+					} else if (key.equals("config")) {
+						entry.config = ModMetadataParser.readString(reader, "Mixin config");
+					} else if (key.equals("environment")) {
+						entry.environment = Environment.read(reader);
+					} else {
+						reader.skipValue();
 					}
-				} else {
-					throw new JsonParseException("Invalid type for mixin entry!");
 				}
 
-				return entry;
+				reader.endObject();
+
+				if (entry.config == null) {
+					throw new JsonParseException("Missing mandatory key 'config' in mixin entry!");
+				}
+			} else if (reader.peek() == JsonToken.BEGIN_ARRAY || reader.peek() == JsonToken.NULL) {
+				throw new JsonParseException("Invalid type for mixin entry!");
+			} else {
+				entry.config = ModMetadataParser.readString(reader, "Mixin entry");
 			}
+
+			return entry;
 		}
 	}
 
@@ -513,41 +806,35 @@ public class ModMetadataV1 implements LoaderModMetadata {
 			}
 		}
 
-		public static class Deserializer implements JsonDeserializer<Environment> {
-			@Override
-			public Environment deserialize(JsonElement element, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
-				String s = element.getAsString().toLowerCase(Locale.ROOT);
-				if (s.isEmpty() || s.equals("*")) {
-					return UNIVERSAL;
-				} else if (s.equals("client")) {
-					return CLIENT;
-				} else if (s.equals("server")) {
-					return SERVER;
-				} else {
-					throw new JsonParseException("Invalid environment type: " + s + "!");
-				}
+		static Environment read(JsonReader reader) throws IOException {
+			String s = ModMetadataParser.readString(reader, "Environment").toLowerCase(Locale.ROOT);
+			if (s.isEmpty() || s.equals("*")) {
+				return UNIVERSAL;
+			} else if (s.equals("client")) {
+				return CLIENT;
+			} else if (s.equals("server")) {
+				return SERVER;
+			} else {
+				throw new JsonParseException("Invalid environment type: " + s + "!");
 			}
 		}
 	}
 
 	public static class LicenseEntry {
-		private final List<String> entries = new ArrayList<>();
+		private static final LicenseEntry EMPTY = new LicenseEntry(Collections.emptyList());
 
-		public static class Deserializer implements JsonDeserializer<LicenseEntry> {
-			@Override
-			public LicenseEntry deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-				LicenseEntry entry = new LicenseEntry();
+		private final List<String> entries;
 
-				if (json.isJsonArray()) {
-					json.getAsJsonArray().forEach((e) -> entry.entries.add(e.getAsString()));
-				} else if (json.isJsonPrimitive()) {
-					entry.entries.add(json.getAsString());
-				} else {
-					throw new JsonParseException("License must be a string or array of strings!");
-				}
+		private LicenseEntry(List<String> entries) {
+			this.entries = entries;
+		}
 
-				return entry;
+		static LicenseEntry read(JsonReader reader) throws IOException {
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				throw new JsonParseException("License must be a string or array of strings!");
 			}
+
+			return new LicenseEntry(ModMetadataParser.readStringList(reader, "License"));
 		}
 	}
 }
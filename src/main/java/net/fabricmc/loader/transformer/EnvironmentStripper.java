@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.transformer;
+
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.api.EnvironmentInterfaces;
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Scans a class for Environment and EnvironmentInterface annotations and strips whatever they mark in the same pass,
+ * unlike {@link EnvironmentStrippingData} and {@link ClassStripper} which need the class to be read twice.
+ *
+ * <p>The class header is held back until its annotations have been seen, and each member until its own annotations
+ * have been; method code is never buffered.</p>
+ */
+public class EnvironmentStripper extends ClassVisitor {
+	private static final String ENVIRONMENT_DESCRIPTOR = Type.getDescriptor(Environment.class);
+	private static final String ENVIRONMENT_INTERFACE_DESCRIPTOR = Type.getDescriptor(EnvironmentInterface.class);
+	private static final String ENVIRONMENT_INTERFACES_DESCRIPTOR = Type.getDescriptor(EnvironmentInterfaces.class);
+
+	private final String envType;
+	private ClassNode header;
+	private boolean stripEntireClass = false;
+	private boolean stripped = false;
+
+	public EnvironmentStripper(int api, ClassVisitor classVisitor, String envType) {
+		super(api, classVisitor);
+		this.envType = envType;
+	}
+
+	private boolean isEnvMismatch(List<AnnotationNode> annotations) {
+		if (annotations != null) {
+			for (AnnotationNode annotation : annotations) {
+				if (ENVIRONMENT_DESCRIPTOR.equals(annotation.desc) && !envType.equals(getEnum(annotation, "value"))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private void collectStripInterfaces(List<AnnotationNode> annotations, Collection<String> stripInterfaces) {
+		if (annotations == null) return;
+
+		for (AnnotationNode annotation : annotations) {
+			if (ENVIRONMENT_INTERFACE_DESCRIPTOR.equals(annotation.desc)) {
+				collectStripInterface(annotation, stripInterfaces);
+			} else if (ENVIRONMENT_INTERFACES_DESCRIPTOR.equals(annotation.desc)) {
+				Object value = getValue(annotation, "value");
+
+				if (value instanceof List) {
+					for (Object itf : (List<?>) value) {
+						collectStripInterface((AnnotationNode) itf, stripInterfaces);
+					}
+				}
+			}
+		}
+	}
+
+	private void collectStripInterface(AnnotationNode annotation, Collection<String> stripInterfaces) {
+		if (!envType.equals(getEnum(annotation, "value"))) {
+			stripInterfaces.add(((Type) getValue(annotation, "itf")).getInternalName());
+		}
+	}
+
+	private static Object getValue(AnnotationNode annotation, String name) {
+		if (annotation.values != null) {
+			for (int i = 0; i < annotation.values.size(); i += 2) {
+				if (name.equals(annotation.values.get(i))) {
+					return annotation.values.get(i + 1);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static String getEnum(AnnotationNode annotation, String name) {
+		Object value = getValue(annotation, name);
+		return value instanceof String[] ? ((String[]) value)[1] : null;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		header = new ClassNode(api);
+		header.visit(version, access, name, signature, superName, interfaces);
+	}
+
+	@Override
+	public void visitSource(String source, String debug) {
+		if (header != null) {
+			header.visitSource(source, debug);
+		} else {
+			super.visitSource(source, debug);
+		}
+	}
+
+	@Override
+	public ModuleVisitor visitModule(String name, int access, String version) {
+		return header != null ? header.visitModule(name, access, version) : super.visitModule(name, access, version);
+	}
+
+	@Override
+	public void visitNestHost(String nestHost) {
+		if (header != null) {
+			header.visitNestHost(nestHost);
+		} else {
+			super.visitNestHost(nestHost);
+		}
+	}
+
+	@Override
+	public void visitOuterClass(String owner, String name, String descriptor) {
+		if (header != null) {
+			header.visitOuterClass(owner, name, descriptor);
+		} else {
+			super.visitOuterClass(owner, name, descriptor);
+		}
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+		return header != null ? header.visitAnnotation(descriptor, visible) : super.visitAnnotation(descriptor, visible);
+	}
+
+	@Override
+	public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+		return header != null ? header.visitTypeAnnotation(typeRef, typePath, descriptor, visible) : super.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+	}
+
+	@Override
+	public void visitAttribute(Attribute attribute) {
+		if (header != null) {
+			header.visitAttribute(attribute);
+		} else {
+			super.visitAttribute(attribute);
+		}
+	}
+
+	/**
+	 * Called once everything which can decide what gets stripped from the class itself has been seen.
+	 */
+	private void flushHeader() {
+		if (header == null) return;
+		ClassNode header = this.header;
+		this.header = null;
+
+		if (isEnvMismatch(header.visibleAnnotations) || isEnvMismatch(header.invisibleAnnotations)) {
+			stripEntireClass = true;
+			cv = null;
+			return;
+		}
+
+		Collection<String> stripInterfaces = new HashSet<>();
+		collectStripInterfaces(header.visibleAnnotations, stripInterfaces);
+		collectStripInterfaces(header.invisibleAnnotations, stripInterfaces);
+
+		if (!stripInterfaces.isEmpty()) {
+			List<String> interfaces = new ArrayList<>(header.interfaces);
+			interfaces.removeAll(stripInterfaces);
+			header.interfaces = interfaces;
+			stripped = true;
+		}
+
+		if (cv != null) {
+			header.accept(new ClassVisitor(api, cv) {
+				@Override
+				public void visitEnd() {
+					// Not done yet, the rest of the class is still to come
+				}
+			});
+		}
+	}
+
+	@Override
+	public void visitNestMember(String nestMember) {
+		flushHeader();
+		super.visitNestMember(nestMember);
+	}
+
+	@Override
+	public void visitInnerClass(String name, String outerName, String innerName, int access) {
+		flushHeader();
+		super.visitInnerClass(name, outerName, innerName, access);
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		flushHeader();
+		if (cv == null) return null;
+
+		return new FieldNode(api, access, name, descriptor, signature, value) {
+			@Override
+			public void visitEnd() {
+				if (isEnvMismatch(visibleAnnotations) || isEnvMismatch(invisibleAnnotations)) {
+					stripped = true;
+				} else {
+					accept(cv);
+				}
+			}
+		};
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+		flushHeader();
+		if (cv == null) return null;
+
+		MethodNode annotations = new MethodNode(api, access, name, descriptor, signature, exceptions);
+		return new MethodVisitor(api, annotations) {
+			private boolean decided;
+
+			/**
+			 * Method annotations all come before the code, so by the time that starts we know whether to keep it.
+			 */
+			private void decide() {
+				if (decided) return;
+				decided = true;
+
+				if (isEnvMismatch(annotations.visibleAnnotations) || isEnvMismatch(annotations.invisibleAnnotations)) {
+					stripped = true;
+					mv = null;
+					return;
+				}
+
+				MethodVisitor target = cv.visitMethod(access, name, descriptor, signature, exceptions);
+				if (target != null) {
+					annotations.accept(new MethodVisitor(api, target) {
+						@Override
+						public void visitEnd() {
+							// Not done yet, the code is still to come
+						}
+					});
+				}
+
+				mv = target;
+			}
+
+			@Override
+			public void visitCode() {
+				decide();
+				super.visitCode();
+			}
+
+			@Override
+			public void visitEnd() {
+				decide();
+				super.visitEnd();
+			}
+		};
+	}
+
+	@Override
+	public void visitEnd() {
+		flushHeader();
+		super.visitEnd();
+	}
+
+	public boolean stripEntireClass() {
+		return stripEntireClass;
+	}
+
+	/**
+	 * @return Whether anything was removed from the class.
+	 */
+	public boolean hasStripped() {
+		return stripped;
+	}
+}
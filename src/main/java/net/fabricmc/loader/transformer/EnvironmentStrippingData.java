@@ -124,10 +124,11 @@ public class EnvironmentStrippingData extends ClassVisitor {
 
 	@Override
 	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		String fieldId = name + descriptor;
 		return new FieldVisitor(api) {
 			@Override
 			public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-				return visitMemberAnnotation(descriptor, visible, () -> stripFields.add(name + descriptor));
+				return visitMemberAnnotation(descriptor, visible, () -> stripFields.add(fieldId));
 			}
 		};
 	}
@@ -17,11 +17,27 @@
 package net.fabricmc.loader.transformer;
 
 import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.api.EnvironmentInterfaces;
 import net.fabricmc.loader.entrypoint.EntrypointTransformer;
 import net.fabricmc.loader.launch.common.FabricLauncherBase;
 import org.objectweb.asm.*;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public final class FabricTransformer {
+	private static final byte[][] ENVIRONMENT_DESCRIPTORS = {
+		Type.getDescriptor(Environment.class).getBytes(StandardCharsets.UTF_8),
+		Type.getDescriptor(EnvironmentInterface.class).getBytes(StandardCharsets.UTF_8),
+		Type.getDescriptor(EnvironmentInterfaces.class).getBytes(StandardCharsets.UTF_8)
+	};
+	private static final int CONSTANT_UTF8 = 1;
+
+	private static final AtomicInteger environmentScans = new AtomicInteger();
+	private static final AtomicInteger environmentScansSkipped = new AtomicInteger();
+
 	public static byte[] lwTransformerHook(String name, String transformedName, byte[] bytes) {
 		boolean isDevelopment = FabricLauncherBase.getLauncher().isDevelopment();
 		EnvType envType = FabricLauncherBase.getLauncher().getEnvironmentType();
@@ -49,33 +65,98 @@ public final class FabricTransformer {
 		}
 
 		ClassReader classReader = new ClassReader(bytes);
-		ClassWriter classWriter = new ClassWriter(0);
-		ClassVisitor visitor = classWriter;
-		int visitorCount = 0;
-
-		if (transformAccess) {
-			visitor = new PackageAccessFixer(Opcodes.ASM7, visitor);
-			visitorCount++;
-		}
 
-		//noinspection ConstantConditions
 		if (environmentStrip) {
-			EnvironmentStrippingData stripData = new EnvironmentStrippingData(Opcodes.ASM7, envType.toString());
-			classReader.accept(stripData, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-			if (stripData.stripEntireClass()) {
-				throw new RuntimeException("Cannot load class " + name + " in environment type " + envType);
+			if (!referencesEnvironmentAnnotations(classReader)) {
+				environmentScansSkipped.incrementAndGet();
+				environmentStrip = false;
+
+				if (!transformAccess) {
+					return bytes;
+				}
+			} else {
+				environmentScans.incrementAndGet();
 			}
-			if (!stripData.isEmpty()) {
-				visitor = new ClassStripper(Opcodes.ASM7, visitor, stripData.getStripInterfaces(), stripData.getStripFields(), stripData.getStripMethods());
-				visitorCount++;
+		}
+
+		if (transformAccess) {
+			// The class is being rewritten anyway, so find and strip anything environment specific in the same pass
+			ClassWriter classWriter = new ClassWriter(classReader, 0);
+			ClassVisitor visitor = new PackageAccessFixer(Opcodes.ASM7, classWriter);
+
+			if (environmentStrip) {
+				EnvironmentStripper stripper = new EnvironmentStripper(Opcodes.ASM7, visitor, envType.toString());
+				classReader.accept(stripper, 0);
+
+				if (stripper.stripEntireClass()) {
+					throw new RuntimeException("Cannot load class " + name + " in environment type " + envType);
+				}
+			} else {
+				classReader.accept(visitor, 0);
 			}
+
+			return classWriter.toByteArray();
+		}
+
+		// Only stripping, which most classes won't need, so check cheaply before committing to rewriting anything
+		EnvironmentStrippingData stripData = new EnvironmentStrippingData(Opcodes.ASM7, envType.toString());
+		classReader.accept(stripData, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+		if (stripData.stripEntireClass()) {
+			throw new RuntimeException("Cannot load class " + name + " in environment type " + envType);
 		}
 
-		if (visitorCount <= 0) {
+		if (stripData.isEmpty()) {
 			return bytes;
 		}
 
-		classReader.accept(visitor, 0);
+		// Sharing the reader's constant pool lets the writer copy untouched methods across without decoding them
+		ClassWriter classWriter = new ClassWriter(classReader, 0);
+		classReader.accept(new ClassStripper(Opcodes.ASM7, classWriter, stripData.getStripInterfaces(), stripData.getStripFields(), stripData.getStripMethods()), 0);
 		return classWriter.toByteArray();
 	}
+
+	/**
+	 * Checks whether the class' constant pool holds any of the environment annotation descriptors, which it must do
+	 * for any of them to be present. Most classes don't, and can skip being scanned for them entirely.
+	 */
+	private static boolean referencesEnvironmentAnnotations(ClassReader reader) {
+		for (int i = 1, count = reader.getItemCount(); i < count; i++) {
+			int offset = reader.getItem(i);
+			if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_UTF8) continue;
+
+			int length = reader.readUnsignedShort(offset);
+			for (byte[] descriptor : ENVIRONMENT_DESCRIPTORS) {
+				if (length == descriptor.length && matches(reader, offset + 2, descriptor)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean matches(ClassReader reader, int offset, byte[] bytes) {
+		// Check backwards as the descriptors share a common prefix
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			if (reader.readByte(offset + i) != (bytes[i] & 0xFF)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The number of classes which have been scanned for environment annotations.
+	 */
+	public static int getEnvironmentScanCount() {
+		return environmentScans.get();
+	}
+
+	/**
+	 * @return The number of classes which skipped being scanned for environment annotations as they had none.
+	 */
+	public static int getEnvironmentScanSkipCount() {
+		return environmentScansSkipped.get();
+	}
 }
@@ -21,9 +21,15 @@ import net.fabricmc.loader.api.LanguageAdapterException;
 import net.fabricmc.loader.api.ModContainer;
 import net.fabricmc.loader.launch.common.FabricLauncherBase;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class DefaultLanguageAdapter implements LanguageAdapter {
@@ -113,6 +119,9 @@ public final class DefaultLanguageAdapter implements LanguageAdapter {
 				}
 			}
 
+			T bound = bind(c, targetMethod, object, type);
+			if (bound != null) return bound;
+
 			final Object targetObject = object;
 
 			//noinspection unchecked
@@ -124,4 +133,87 @@ public final class DefaultLanguageAdapter implements LanguageAdapter {
 			});
 		}
 	}
+
+	/**
+	 * Implements the given interface with a call straight to the given method, in the same way as a method reference in
+	 * the method's own class would be. Unlike proxying the method, this doesn't go through reflection on every call.
+	 *
+	 * @return The bound method, or null if the interface isn't functional or the method can't be bound to it.
+	 */
+	private static <T> T bind(Class<?> c, Method method, Object target, Class<T> type) throws LanguageAdapterException {
+		Method samMethod = getSingleAbstractMethod(type);
+		if (samMethod == null || samMethod.getParameterCount() != method.getParameterCount()) return null;
+
+		CallSite site;
+
+		try {
+			MethodHandles.Lookup lookup = privateLookupIn(c);
+			MethodType samType = MethodType.methodType(samMethod.getReturnType(), samMethod.getParameterTypes());
+			MethodType instantiatedType = samType;
+			Class<?>[] params = method.getParameterTypes();
+
+			// The metafactory only casts arguments to what the method takes if it's told to expect them
+			for (int i = 0; i < params.length; i++) {
+				Class<?> samParam = samType.parameterType(i);
+
+				if (!samParam.isPrimitive() && !params[i].isPrimitive() && samParam.isAssignableFrom(params[i])) {
+					instantiatedType = instantiatedType.changeParameterType(i, params[i]);
+				}
+			}
+
+			MethodType factoryType = target != null ? MethodType.methodType(type, c) : MethodType.methodType(type);
+			site = LambdaMetafactory.metafactory(lookup, samMethod.getName(), factoryType, samType, lookup.unreflect(method), instantiatedType);
+		} catch (ReflectiveOperationException | LambdaConversionException | SecurityException e) {
+			return null;
+		}
+
+		try {
+			return type.cast(target != null ? site.getTarget().invoke(target) : site.getTarget().invoke());
+		} catch (Throwable t) {
+			throw new LanguageAdapterException(t);
+		}
+	}
+
+	private static Method getSingleAbstractMethod(Class<?> type) {
+		Method ret = null;
+
+		for (Method m : type.getMethods()) {
+			if (!Modifier.isAbstract(m.getModifiers()) || isObjectMethod(m)) {
+				continue;
+			}
+
+			if (ret != null && !(ret.getName().equals(m.getName()) && Arrays.equals(ret.getParameterTypes(), m.getParameterTypes()))) {
+				return null;
+			}
+
+			ret = m;
+		}
+
+		return ret;
+	}
+
+	private static boolean isObjectMethod(Method m) {
+		try {
+			Object.class.getMethod(m.getName(), m.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return A lookup with full access to the given class, which the metafactory needs to define the implementation
+	 * alongside it.
+	 */
+	private static MethodHandles.Lookup privateLookupIn(Class<?> c) throws ReflectiveOperationException {
+		try {
+			Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+			return (MethodHandles.Lookup) privateLookupIn.invoke(null, c, MethodHandles.lookup());
+		} catch (NoSuchMethodException e) {
+			// Java 8 has no public way of getting one
+			Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+			constructor.setAccessible(true);
+			return constructor.newInstance(c, MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE | MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE);
+		}
+	}
 }
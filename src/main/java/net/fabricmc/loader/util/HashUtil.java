@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The SHA-1 hashing shared by the loader's caches.
+ */
+public final class HashUtil {
+	private HashUtil() {
+
+	}
+
+	public static MessageDigest newSha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 is missing?", e);
+		}
+	}
+
+	/**
+	 * Adds a string to the digest, terminated so that consecutive strings can't run into each other.
+	 */
+	public static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * @return The SHA-1 hash of the file's contents.
+	 */
+	public static byte[] hash(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return hash(in);
+		}
+	}
+
+	/**
+	 * @return The SHA-1 hash of everything left in the stream, which is not closed.
+	 */
+	public static byte[] hash(InputStream in) throws IOException {
+		return copy(in, null);
+	}
+
+	/**
+	 * Copies a file, hashing it on the way rather than reading it twice.
+	 *
+	 * @return The SHA-1 hash of the file's contents.
+	 */
+	public static byte[] copy(Path source, Path target) throws IOException {
+		try (InputStream in = Files.newInputStream(source); OutputStream out = Files.newOutputStream(target)) {
+			return copy(in, out);
+		}
+	}
+
+	private static byte[] copy(InputStream in, OutputStream out) throws IOException {
+		MessageDigest digest = newSha1();
+		byte[] buffer = new byte[65536];
+		int len;
+
+		while ((len = in.read(buffer)) > 0) {
+			digest.update(buffer, 0, len);
+			if (out != null) out.write(buffer, 0, len);
+		}
+
+		return digest.digest();
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder out = new StringBuilder(bytes.length * 2);
+
+		for (byte b : bytes) {
+			out.append(Character.forDigit((b >> 4) & 0xF, 16));
+			out.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return out.toString();
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Finds entries in a zip by reading its central directory directly, rather than opening it as a file system. The zip
+ * can be read from a channel, including a stored (uncompressed) entry of another zip so nested JARs can be looked into
+ * without copying them out, or from a buffer such as a memory mapping of the whole file.
+ *
+ * <p>Only plain archives are handled, anything else (such as ZIP64) fails with an {@link IOException} so the caller
+ * can fall back to opening the zip normally. Every size and offset read is checked to fit in the zip, so a corrupt
+ * one fails the same way.</p>
+ */
+public final class ZipDirectory {
+	private static final int EOCD_SIGNATURE = 0x06054b50;
+	private static final int EOCD_SIZE = 22;
+	private static final int CEN_SIGNATURE = 0x02014b50;
+	private static final int CEN_SIZE = 46;
+	private static final int LOC_SIGNATURE = 0x04034b50;
+	private static final int LOC_SIZE = 30;
+	/** Deflate can't expand data by more than about this much, so a bigger entry has a corrupt size. */
+	private static final int MAX_DEFLATE_RATIO = 1032;
+
+	public static final int STORED = 0;
+	public static final int DEFLATED = 8;
+
+	public static final class Entry {
+		public final String name;
+		public final int method;
+		public final boolean encrypted;
+		public final long compressedSize, size;
+		private final long localHeaderOffset;
+
+		private Entry(String name, int method, boolean encrypted, long compressedSize, long size, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.encrypted = encrypted;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+
+	private interface Source {
+		/**
+		 * @return The given bytes, in a little endian buffer starting from 0.
+		 */
+		ByteBuffer read(long position, int length) throws IOException;
+	}
+
+	private final SeekableByteChannel channel;
+	private final Source source;
+	/** Where the local headers end in the source, and with them any entry data. */
+	private final long dataEnd;
+	private final Map<String, Entry> entries;
+
+	private ZipDirectory(SeekableByteChannel channel, Source source, long dataEnd, Map<String, Entry> entries) {
+		this.channel = channel;
+		this.source = source;
+		this.dataEnd = dataEnd;
+		this.entries = entries;
+	}
+
+	/**
+	 * Reads the central directory of the zip in the given part of the channel.
+	 *
+	 * <p>The channel is read from whenever an entry is, so it can't be used by anything else at the same time.</p>
+	 *
+	 * @param wanted The names of the entries to keep, or null for all of them.
+	 */
+	public static ZipDirectory read(SeekableByteChannel channel, long start, long length, Collection<String> wanted) throws IOException {
+		return read(channel, (position, len) -> {
+			ByteBuffer buffer = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(position);
+
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) throw new EOFException();
+			}
+
+			buffer.flip();
+			return buffer;
+		}, start, length, wanted);
+	}
+
+	/**
+	 * Reads the central directory of the zip filling the given buffer.
+	 *
+	 * <p>Entries are read as views of the buffer without copying, and the buffer itself is never moved, so they can
+	 * be read from several threads at once.</p>
+	 *
+	 * @param wanted The names of the entries to keep, or null for all of them.
+	 */
+	public static ZipDirectory read(ByteBuffer buffer, Collection<String> wanted) throws IOException {
+		return read(null, (position, len) -> {
+			if (position < 0 || position + len > buffer.limit()) throw new EOFException();
+
+			ByteBuffer view = buffer.duplicate();
+			view.limit((int) position + len);
+			view.position((int) position);
+			return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}, 0, buffer.limit(), wanted);
+	}
+
+	private static ZipDirectory read(SeekableByteChannel channel, Source source, long start, long length, Collection<String> wanted) throws IOException {
+		if (start < 0 || length < EOCD_SIZE) throw new IOException("Invalid zip location");
+
+		// The end of central directory record is last, followed only by a comment of at most 64k
+		int tailLength = (int) Math.min(length, EOCD_SIZE + 0xFFFF);
+		ByteBuffer tail = source.read(start + length - tailLength, tailLength);
+		int eocd = -1;
+
+		for (int i = tailLength - EOCD_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == EOCD_SIGNATURE) {
+				eocd = i;
+				break;
+			}
+		}
+
+		if (eocd < 0) throw new IOException("No end of central directory record");
+
+		int count = tail.getShort(eocd + 10) & 0xFFFF;
+		long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+		long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+		if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+			throw new IOException("ZIP64 archives aren't supported");
+		}
+
+		if (directorySize > Integer.MAX_VALUE) throw new IOException("Central directory too large");
+
+		// Anything prepended to the archive (such as a launcher script) shifts every offset in it
+		long directoryStart = length - tailLength + eocd - directorySize;
+		long prefix = directoryStart - directoryOffset;
+		if (directoryStart < 0 || prefix < 0) throw new IOException("Invalid central directory location");
+
+		ByteBuffer directory = source.read(start + directoryStart, (int) directorySize);
+		Map<String, Entry> entries = new HashMap<>(wanted != null ? wanted.size() * 2 : count * 2);
+		int maxNameLength = wanted != null ? 0 : 0xFFFF;
+
+		if (wanted != null) {
+			for (String name : wanted) {
+				maxNameLength = Math.max(maxNameLength, name.getBytes(StandardCharsets.UTF_8).length);
+			}
+		}
+
+		for (int i = 0, pos = 0; i < count; i++) {
+			if (pos + CEN_SIZE > directorySize || directory.getInt(pos) != CEN_SIGNATURE) {
+				throw new IOException("Invalid central directory entry");
+			}
+
+			int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+			int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+			int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+
+			if ((long) pos + CEN_SIZE + nameLength + extraLength + commentLength > directorySize) {
+				throw new IOException("Central directory entry overruns the directory");
+			}
+
+			if (nameLength <= maxNameLength) {
+				byte[] nameBytes = new byte[nameLength];
+				directory.position(pos + CEN_SIZE);
+				directory.get(nameBytes);
+				String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+				// The first of any duplicates wins, as it does for the JDK's zip file system
+				if ((wanted == null || wanted.contains(name)) && !entries.containsKey(name)) {
+					long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+					long size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+					long localHeaderOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+
+					if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+						throw new IOException("ZIP64 entries aren't supported");
+					}
+
+					// The local header and the data after it both come before the central directory
+					if (prefix + localHeaderOffset + LOC_SIZE + compressedSize > directoryStart) {
+						throw new IOException("Entry " + name + " overruns the zip");
+					}
+
+					boolean encrypted = (directory.getShort(pos + 8) & 1) != 0;
+					entries.put(name, new Entry(name, directory.getShort(pos + 10) & 0xFFFF, encrypted, compressedSize, size, start + prefix + localHeaderOffset));
+				}
+			}
+
+			pos += CEN_SIZE + nameLength + extraLength + commentLength;
+		}
+
+		return new ZipDirectory(channel, source, start + directoryStart, entries);
+	}
+
+	/**
+	 * @return The channel the zip is read from, or null if it is read from a buffer.
+	 */
+	public SeekableByteChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return The given entry, or null if it isn't in the zip (or wasn't asked for).
+	 */
+	public Entry get(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * @return Every entry which was asked for and is in the zip, in no particular order.
+	 */
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	/**
+	 * @return Where the given entry's (possibly compressed) data starts in the channel or buffer.
+	 */
+	public long getDataOffset(Entry entry) throws IOException {
+		ByteBuffer header = source.read(entry.localHeaderOffset, LOC_SIZE);
+		if (header.getInt(0) != LOC_SIGNATURE) throw new IOException("Invalid local file header for " + entry.name);
+
+		// The local name and extra field don't have to match the central directory's
+		long offset = entry.localHeaderOffset + LOC_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+		if (offset + entry.compressedSize > dataEnd) throw new IOException("Entry " + entry.name + " overruns the zip");
+
+		return offset;
+	}
+
+	/**
+	 * @return The given entry's data as it is stored, so still compressed if it is {@link #DEFLATED}.
+	 */
+	public ByteBuffer getRawData(Entry entry) throws IOException {
+		if (entry.encrypted) throw new IOException("Entry " + entry.name + " is encrypted");
+		if (entry.compressedSize > Integer.MAX_VALUE || entry.size > Integer.MAX_VALUE) throw new IOException("Entry " + entry.name + " too large");
+
+		switch (entry.method) {
+			case STORED:
+				if (entry.size != entry.compressedSize) throw new IOException("Invalid size for " + entry.name);
+				break;
+			case DEFLATED:
+				if (entry.size > entry.compressedSize * MAX_DEFLATE_RATIO + 64) throw new IOException("Invalid size for " + entry.name);
+				break;
+			default:
+				throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+		}
+
+		return source.read(getDataOffset(entry), (int) entry.compressedSize);
+	}
+
+	/**
+	 * @return The given entry's full, uncompressed, contents.
+	 */
+	public byte[] readData(Entry entry) throws IOException {
+		ByteBuffer data = getRawData(entry);
+		byte[] input;
+
+		if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.remaining()) {
+			input = data.array();
+		} else {
+			input = new byte[data.remaining()];
+			data.get(input);
+		}
+
+		if (entry.method == STORED) return input;
+
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(input);
+			byte[] ret = new byte[(int) entry.size];
+			int len = 0;
+
+			while (len < ret.length) {
+				int read = inflater.inflate(ret, len, ret.length - len);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+				len += read;
+			}
+
+			if (len != ret.length) throw new IOException("Entry " + entry.name + " is shorter than its recorded size");
+			return ret;
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed entry " + entry.name, e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
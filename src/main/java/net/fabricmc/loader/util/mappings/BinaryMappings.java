@@ -0,0 +1,474 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.util.mappings;
+
+import net.fabricmc.mappings.ClassEntry;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MethodEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A compiled, read-only form of a set of mappings, meant to be memory mapped rather than parsed.
+ *
+ * <p>Every name is stored once in a string table sorted in {@link String#compareTo} order, so comparing two string ids
+ * is the same as comparing the strings themselves. Classes, fields and methods are then fixed-width rows of string ids
+ * (one name, or one owner/name/descriptor triple, per namespace), each with a per-namespace index sorted by those ids
+ * to allow binary searching in any namespace. Missing names are stored as {@code -1}.</p>
+ */
+public final class BinaryMappings {
+	private static final int MAGIC = 0x464D4150; // FMAP
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 7 * 4;
+
+	public static final BinaryMappings EMPTY = new BinaryMappings(compile(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+
+	private final ByteBuffer buffer;
+	private final List<String> namespaces;
+	private final int stringCount;
+	private final IntBuffer stringOffsets;
+	private final int stringDataStart;
+	private final IntBuffer classes, classIndex;
+	private final Members fields, methods;
+
+	private BinaryMappings(ByteBuffer buffer) {
+		this.buffer = buffer;
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not a compiled mappings file, or from a different version");
+		}
+
+		int namespaceCount = buffer.getInt(8);
+		stringCount = buffer.getInt(12);
+		int classCount = buffer.getInt(16);
+		int fieldCount = buffer.getInt(20);
+		int methodCount = buffer.getInt(24);
+
+		int pos = HEADER_SIZE;
+		IntBuffer namespaceIds = slice(pos, namespaceCount);
+		pos += namespaceCount * 4;
+		stringOffsets = slice(pos, stringCount + 1);
+		pos += (stringCount + 1) * 4;
+		stringDataStart = pos;
+		pos += align(stringOffsets.get(stringCount));
+
+		List<String> namespaces = new ArrayList<>(namespaceCount);
+		for (int i = 0; i < namespaceCount; i++) {
+			namespaces.add(getString(namespaceIds.get(i)));
+		}
+		this.namespaces = Collections.unmodifiableList(namespaces);
+
+		classes = slice(pos, classCount * namespaceCount);
+		pos += classCount * namespaceCount * 4;
+		classIndex = slice(pos, classCount * namespaceCount);
+		pos += classCount * namespaceCount * 4;
+		fields = new Members(pos, fieldCount);
+		pos += fieldCount * namespaceCount * 4 * 4;
+		methods = new Members(pos, methodCount);
+	}
+
+	/**
+	 * Memory maps a file written by {@link #write}.
+	 */
+	public static BinaryMappings open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new BinaryMappings(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Invalid compiled mappings file " + file, e);
+		}
+	}
+
+	/**
+	 * Compiles the given mappings, without writing them anywhere.
+	 */
+	public static BinaryMappings of(Mappings mappings) {
+		return new BinaryMappings(compile(mappings));
+	}
+
+	/**
+	 * Compiles the given mappings to a file, which can then be {@link #open opened} on later launches.
+	 */
+	public static void write(Mappings mappings, Path file) throws IOException {
+		ByteBuffer data = compile(mappings);
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static ByteBuffer compile(Mappings mappings) {
+		List<String> namespaces = new ArrayList<>(mappings.getNamespaces());
+		List<String[]> classes = new ArrayList<>();
+		List<String[]> fields = new ArrayList<>();
+		List<String[]> methods = new ArrayList<>();
+
+		for (ClassEntry entry : mappings.getClassEntries()) {
+			String[] row = new String[namespaces.size()];
+			for (int ns = 0; ns < row.length; ns++) {
+				row[ns] = entry.get(namespaces.get(ns));
+			}
+			classes.add(row);
+		}
+
+		for (FieldEntry entry : mappings.getFieldEntries()) {
+			fields.add(toRow(namespaces, entry::get));
+		}
+
+		for (MethodEntry entry : mappings.getMethodEntries()) {
+			methods.add(toRow(namespaces, entry::get));
+		}
+
+		return compile(namespaces, classes, fields, methods);
+	}
+
+	private static String[] toRow(List<String> namespaces, Function<String, EntryTriple> getter) {
+		String[] row = new String[namespaces.size() * 3];
+
+		for (int ns = 0; ns < namespaces.size(); ns++) {
+			EntryTriple triple = getter.apply(namespaces.get(ns));
+
+			if (triple != null) {
+				row[ns * 3] = triple.getOwner();
+				row[ns * 3 + 1] = triple.getName();
+				row[ns * 3 + 2] = triple.getDesc();
+			}
+		}
+
+		return row;
+	}
+
+	private static ByteBuffer compile(List<String> namespaces, List<String[]> classes, List<String[]> fields, List<String[]> methods) {
+		Map<String, Integer> ids = new HashMap<>();
+		namespaces.forEach(s -> ids.put(s, 0));
+
+		for (List<String[]> rows : Arrays.asList(classes, fields, methods)) {
+			for (String[] row : rows) {
+				for (String s : row) {
+					if (s != null) ids.put(s, 0);
+				}
+			}
+		}
+
+		String[] strings = ids.keySet().toArray(new String[0]);
+		Arrays.sort(strings);
+		byte[][] encoded = new byte[strings.length][];
+		int stringDataSize = 0;
+
+		for (int i = 0; i < strings.length; i++) {
+			ids.put(strings[i], i);
+			encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+			stringDataSize += encoded[i].length;
+		}
+
+		int nsCount = namespaces.size();
+		int size = HEADER_SIZE + nsCount * 4 + (strings.length + 1) * 4 + align(stringDataSize)
+			+ classes.size() * nsCount * 4 * 2
+			+ fields.size() * nsCount * 4 * 4
+			+ methods.size() * nsCount * 4 * 4;
+
+		ByteBuffer out = ByteBuffer.allocate(size);
+		out.putInt(MAGIC).putInt(VERSION).putInt(nsCount).putInt(strings.length);
+		out.putInt(classes.size()).putInt(fields.size()).putInt(methods.size());
+
+		for (String ns : namespaces) {
+			out.putInt(ids.get(ns));
+		}
+
+		int offset = 0;
+		for (byte[] bytes : encoded) {
+			out.putInt(offset);
+			offset += bytes.length;
+		}
+		out.putInt(offset);
+
+		for (byte[] bytes : encoded) {
+			out.put(bytes);
+		}
+		out.position(out.position() + align(stringDataSize) - stringDataSize);
+
+		putTable(out, classes, ids, nsCount, 1);
+		putTable(out, fields, ids, nsCount, 3);
+		putTable(out, methods, ids, nsCount, 3);
+
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Writes out a table's rows, followed by an index of the rows sorted by the ids of each namespace's columns.
+	 */
+	private static void putTable(ByteBuffer out, List<String[]> rows, Map<String, Integer> ids, int nsCount, int width) {
+		int[][] idRows = new int[rows.size()][];
+
+		for (int i = 0; i < idRows.length; i++) {
+			String[] row = rows.get(i);
+			idRows[i] = new int[row.length];
+
+			for (int j = 0; j < row.length; j++) {
+				idRows[i][j] = row[j] != null ? ids.get(row[j]) : -1;
+				out.putInt(idRows[i][j]);
+			}
+		}
+
+		for (int ns = 0; ns < nsCount; ns++) {
+			int start = ns * width;
+			Integer[] order = new Integer[idRows.length];
+			for (int i = 0; i < order.length; i++) order[i] = i;
+
+			Arrays.sort(order, (a, b) -> {
+				for (int j = start; j < start + width; j++) {
+					int cmp = Integer.compare(idRows[a][j], idRows[b][j]);
+					if (cmp != 0) return cmp;
+				}
+
+				return 0;
+			});
+
+			for (Integer i : order) {
+				out.putInt(i);
+			}
+		}
+	}
+
+	private static int align(int size) {
+		return (size + 3) & ~3;
+	}
+
+	private IntBuffer slice(int pos, int count) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(pos);
+		view.limit(pos + count * 4);
+		return view.slice().asIntBuffer();
+	}
+
+	public List<String> getNamespaces() {
+		return namespaces;
+	}
+
+	/**
+	 * @return The index of the given namespace, or -1 if it isn't present.
+	 */
+	public int getNamespaceId(String namespace) {
+		return namespaces.indexOf(namespace);
+	}
+
+	/**
+	 * Decodes the given string from the table each time, rather than keeping it, as the table is memory mapped and
+	 * strings are only looked up briefly (such as when remapping), so keeping them would only add to the heap.
+	 */
+	String getString(int id) {
+		if (id < 0) return null;
+
+		int start = stringOffsets.get(id);
+		byte[] bytes = new byte[stringOffsets.get(id + 1) - start];
+		ByteBuffer view = buffer.duplicate();
+		view.position(stringDataStart + start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The id of the given string, or -1 if it isn't in the string table.
+	 */
+	int getStringId(String value) {
+		int low = 0;
+		int high = stringCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getString(mid).compareTo(value);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	public int getClassCount() {
+		return classes.limit() / Math.max(1, namespaces.size());
+	}
+
+	public String getClassName(int cls, int namespace) {
+		return getString(classes.get(cls * namespaces.size() + namespace));
+	}
+
+	/**
+	 * @param name The internal name of the class in the given namespace.
+	 * @return The index of the class, or -1 if it isn't mapped.
+	 */
+	public int findClass(int namespace, String name) {
+		int id = getStringId(name);
+		if (id < 0) return -1;
+
+		int nsCount = namespaces.size();
+		int count = getClassCount();
+		int low = 0;
+		int high = count - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cls = classIndex.get(namespace * count + mid);
+			int cmp = Integer.compare(classes.get(cls * nsCount + namespace), id);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return cls;
+			}
+		}
+
+		return -1;
+	}
+
+	public Members getFields() {
+		return fields;
+	}
+
+	public Members getMethods() {
+		return methods;
+	}
+
+	/**
+	 * The field or method table of a set of compiled mappings.
+	 */
+	public final class Members {
+		private final IntBuffer rows, index;
+		private final int count;
+
+		private Members(int pos, int count) {
+			int nsCount = namespaces.size();
+			this.count = count;
+			this.rows = slice(pos, count * nsCount * 3);
+			this.index = slice(pos + count * nsCount * 3 * 4, count * nsCount);
+		}
+
+		public int size() {
+			return count;
+		}
+
+		private int get(int member, int namespace, int column) {
+			return rows.get((member * namespaces.size() + namespace) * 3 + column);
+		}
+
+		public String getOwner(int member, int namespace) {
+			return getString(get(member, namespace, 0));
+		}
+
+		public String getName(int member, int namespace) {
+			return getString(get(member, namespace, 1));
+		}
+
+		public String getDesc(int member, int namespace) {
+			return getString(get(member, namespace, 2));
+		}
+
+		/**
+		 * @return The index of the member, or -1 if it isn't mapped.
+		 */
+		public int find(int namespace, String owner, String name, String desc) {
+			int ownerId = getStringId(owner);
+			int nameId = getStringId(name);
+			int descId = getStringId(desc);
+			if (ownerId < 0 || nameId < 0 || descId < 0) return -1;
+
+			int low = 0;
+			int high = count - 1;
+
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int member = index.get(namespace * count + mid);
+				int cmp = Integer.compare(get(member, namespace, 0), ownerId);
+				if (cmp == 0) cmp = Integer.compare(get(member, namespace, 1), nameId);
+				if (cmp == 0) cmp = Integer.compare(get(member, namespace, 2), descId);
+
+				if (cmp < 0) {
+					low = mid + 1;
+				} else if (cmp > 0) {
+					high = mid - 1;
+				} else {
+					return member;
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 * @return The indices of every member of the given class, which may be empty.
+		 */
+		public int[] findByOwner(int namespace, String owner) {
+			int ownerId = getStringId(owner);
+			if (ownerId < 0) return new int[0];
+
+			// Lower bound of the owner's run in the sorted index, then scan until it ends
+			int low = 0;
+			int high = count;
+
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+
+				if (get(index.get(namespace * count + mid), namespace, 0) < ownerId) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+
+			int end = low;
+			while (end < count && get(index.get(namespace * count + end), namespace, 0) == ownerId) {
+				end++;
+			}
+
+			int[] ret = new int[end - low];
+			for (int i = 0; i < ret.length; i++) {
+				ret[i] = index.get(namespace * count + low + i);
+			}
+
+			return ret;
+		}
+	}
+}
@@ -44,4 +44,29 @@ public class TinyRemapperMappingsHelper {
 			}
 		};
 	}
+
+	public static IMappingProvider create(BinaryMappings mappings, String from, String to) {
+		int fromId = mappings.getNamespaceId(from);
+		int toId = mappings.getNamespaceId(to);
+
+		return (classMap, fieldMap, methodMap) -> {
+			for (int i = 0; i < mappings.getClassCount(); i++) {
+				classMap.put(mappings.getClassName(i, fromId), mappings.getClassName(i, toId));
+			}
+
+			BinaryMappings.Members fields = mappings.getFields();
+			for (int i = 0; i < fields.size(); i++) {
+				String owner = fields.getOwner(i, fromId);
+				if (owner == null) continue;
+				fieldMap.put(owner + "/" + MemberInstance.getFieldId(fields.getName(i, fromId), fields.getDesc(i, fromId)), fields.getName(i, toId));
+			}
+
+			BinaryMappings.Members methods = mappings.getMethods();
+			for (int i = 0; i < methods.size(); i++) {
+				String owner = methods.getOwner(i, fromId);
+				if (owner == null) continue;
+				methodMap.put(owner + "/" + MemberInstance.getMethodId(methods.getName(i, fromId), methods.getDesc(i, fromId)), methods.getName(i, toId));
+			}
+		};
+	}
 }
@@ -28,6 +28,7 @@ public class SemanticVersionImpl implements SemanticVersion {
 	private final int[] components;
 	private final String prerelease;
 	private final String build;
+	private final long packedKey;
 	private String friendlyName;
 
 	public SemanticVersionImpl(String version, boolean storeX) throws VersionParsingException {
@@ -91,6 +92,7 @@ public class SemanticVersionImpl implements SemanticVersion {
 			throw new VersionParsingException("Versions of form 'x' or 'X' not allowed!");
 		}
 
+		packedKey = prerelease != null || hasXRanges() ? VersionIntervalSet.NO_KEY : VersionIntervalSet.pack(components);
 		buildFriendlyName();
 	}
 
@@ -199,6 +201,13 @@ public class SemanticVersionImpl implements SemanticVersion {
 		return true;
 	}
 
+	/**
+	 * @see VersionIntervalSet#getKey
+	 */
+	long getPackedKey() {
+		return packedKey;
+	}
+
 	boolean isPrerelease() {
 		return prerelease != null;
 	}
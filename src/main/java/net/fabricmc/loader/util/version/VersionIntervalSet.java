@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.util.version;
+
+import net.fabricmc.loader.api.Version;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A set of version predicates compiled down to sorted, disjoint intervals of packed version keys.
+ *
+ * <p>A key packs the first four components of a release version into a long (15 bits for the first, 16 for the rest),
+ * ordered the same way as {@link net.fabricmc.loader.api.SemanticVersion#compareTo}. Versions which don't fit, and
+ * pre-releases, have no key and have to be matched against the predicates themselves. Likewise, predicates which
+ * don't form an interval (such as {@code ^0.2.3} or {@code 1.x.3}) can't be compiled at all.</p>
+ */
+public final class VersionIntervalSet {
+	/** The key of any version which can't be packed. */
+	public static final long NO_KEY = -1;
+	public static final VersionIntervalSet ALL = new VersionIntervalSet(new long[] { 0, Long.MAX_VALUE });
+
+	private static final String[] PREFIXES = { ">=", "<=", ">", "<", "=", "~", "^" };
+	private static final int COMPONENTS = 4;
+	private static final long[] COMPONENT_MAX = { 0x7FFF, 0xFFFF, 0xFFFF, 0xFFFF };
+
+	/** Inclusive lower and upper bound of each interval, in ascending order. */
+	private final long[] bounds;
+
+	private VersionIntervalSet(long[] bounds) {
+		this.bounds = bounds;
+	}
+
+	/**
+	 * @return The packed key of the given version, or {@link #NO_KEY} if it doesn't have one.
+	 */
+	public static long getKey(Version version) {
+		return version instanceof SemanticVersionImpl ? ((SemanticVersionImpl) version).getPackedKey() : NO_KEY;
+	}
+
+	static long pack(int[] components) {
+		long key = 0;
+
+		for (int i = 0; i < Math.max(COMPONENTS, components.length); i++) {
+			int component = i < components.length ? components[i] : 0;
+
+			if (i >= COMPONENTS) {
+				if (component != 0) return NO_KEY;
+			} else if (component < 0 || component > COMPONENT_MAX[i]) {
+				return NO_KEY;
+			} else {
+				key = key << 16 | component;
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * @return The largest key sharing the first {@code count} components with the given one.
+	 */
+	private static long fillFrom(long key, int count) {
+		long mask = count == 0 ? Long.MAX_VALUE : (1L << (16 * (COMPONENTS - count))) - 1;
+		return key | mask;
+	}
+
+	/**
+	 * Compiles predicates of which any may match, as used for a dependency.
+	 *
+	 * @return The versions matched, or null if any of the predicates can't be expressed as intervals.
+	 */
+	public static VersionIntervalSet compile(Collection<String> predicates) {
+		List<long[]> intervals = new ArrayList<>(predicates.size());
+
+		for (String predicate : predicates) {
+			long[] interval;
+
+			try {
+				interval = compile(predicate);
+			} catch (VersionParsingException e) {
+				return null;
+			}
+
+			if (interval == null) return null;
+			if (interval[0] <= interval[1]) intervals.add(interval);
+		}
+
+		intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+		long[] bounds = new long[intervals.size() * 2];
+		int size = 0;
+
+		for (long[] interval : intervals) {
+			if (size > 0 && interval[0] - 1 <= bounds[size - 1]) {
+				bounds[size - 1] = Math.max(bounds[size - 1], interval[1]);
+			} else {
+				bounds[size++] = interval[0];
+				bounds[size++] = interval[1];
+			}
+		}
+
+		return new VersionIntervalSet(size == bounds.length ? bounds : Arrays.copyOf(bounds, size));
+	}
+
+	/**
+	 * Compiles a single predicate, following {@link SemanticVersionPredicateParser#create} for release versions.
+	 *
+	 * @return The interval matched (empty if the lower bound is above the upper), or null if it isn't one.
+	 */
+	private static long[] compile(String predicate) throws VersionParsingException {
+		long lower = 0, upper = Long.MAX_VALUE;
+
+		for (String s : predicate.split(" ")) {
+			s = s.trim();
+			if (s.isEmpty() || s.equals("*")) {
+				continue;
+			}
+
+			String prefix = null;
+			for (String p : PREFIXES) {
+				if (s.startsWith(p)) {
+					prefix = p;
+					s = s.substring(p.length());
+					break;
+				}
+			}
+
+			SemanticVersionImpl version = new SemanticVersionImpl(s, true);
+			if (version.hasXRanges() && (prefix != null || version.isPrerelease())) {
+				throw new VersionParsingException("Invalid X-range '" + s + "'!");
+			}
+
+			int count = version.getVersionComponentCount();
+			int[] components = new int[count];
+			int wildcardFrom = count;
+
+			for (int i = 0; i < count; i++) {
+				components[i] = version.getVersionComponent(i);
+
+				if (components[i] == Integer.MIN_VALUE) {
+					wildcardFrom = Math.min(wildcardFrom, i);
+					components[i] = 0;
+				} else if (wildcardFrom < count) {
+					// Wildcards only skip a component, a later one still counts
+					return null;
+				}
+			}
+
+			long key = pack(components);
+			if (key == NO_KEY || wildcardFrom > COMPONENTS) return null;
+
+			// Release versions sharing a pre-release's components come after it
+			boolean prerelease = version.isPrerelease();
+			long termLower, termUpper;
+
+			if (prefix == null || prefix.equals("=")) {
+				if (wildcardFrom < count) {
+					termLower = key;
+					termUpper = fillFrom(key, wildcardFrom);
+				} else if (prerelease) {
+					termLower = 1;
+					termUpper = 0;
+				} else {
+					termLower = termUpper = key;
+				}
+			} else if (prefix.equals(">=")) {
+				termLower = key;
+				termUpper = Long.MAX_VALUE;
+			} else if (prefix.equals(">")) {
+				termLower = prerelease ? key : key + 1;
+				termUpper = Long.MAX_VALUE;
+			} else if (prefix.equals("<=")) {
+				termLower = 0;
+				termUpper = prerelease ? key - 1 : key;
+			} else if (prefix.equals("<")) {
+				termLower = 0;
+				termUpper = key - 1;
+			} else if (prefix.equals("~")) {
+				// Same major version, or same major and minor version and no older
+				if (count == 1 && prerelease) return null;
+				termLower = key;
+				termUpper = fillFrom(key, Math.min(count, 2));
+			} else {
+				// ^ only keeps the first non-zero component, which is only an interval if that's the first one
+				if (components[0] == 0) return null;
+				termLower = key;
+				termUpper = fillFrom(key, 1);
+			}
+
+			lower = Math.max(lower, termLower);
+			upper = Math.min(upper, termUpper);
+		}
+
+		return new long[] { lower, upper };
+	}
+
+	public boolean contains(long key) {
+		int low = 0, high = bounds.length / 2 - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (key < bounds[mid * 2]) {
+				high = mid - 1;
+			} else if (key > bounds[mid * 2 + 1]) {
+				low = mid + 1;
+			} else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public int getIntervalCount() {
+		return bounds.length / 2;
+	}
+
+	public long getLowerBound(int interval) {
+		return bounds[interval * 2];
+	}
+
+	public long getUpperBound(int interval) {
+		return bounds[interval * 2 + 1];
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.test;
+
+import net.fabricmc.loader.api.MappingResolver;
+import net.fabricmc.loader.util.mappings.BinaryMappings;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MappingsProvider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Times the first lookup made through the loader's {@link MappingResolver} against synthetic compiled
+ * mappings, and measures the heap it retains after a batch of class and method lookups. The same is measured for the
+ * whole-namespace maps the resolver used to build on its first lookup, for comparison.
+ *
+ * <p>Arguments (all optional): classes, fields per class, methods per class, random seed.</p>
+ */
+public class MappingResolverBenchmark {
+	private static final Logger LOGGER = LogManager.getFormatterLogger("MappingResolverBenchmark");
+	private static final String FROM = "official", TO = "intermediary";
+	private static final int LOOKUPS = 50;
+
+	private static Mappings generate(int classes, int fields, int methods, Random random) throws Exception {
+		StringBuilder tiny = new StringBuilder("v1\tofficial\tintermediary\tnamed\n");
+
+		for (int cls = 0; cls < classes; cls++) {
+			tiny.append("CLASS\tc").append(cls).append("\tnet/minecraft/class_").append(cls).append("\tnet/minecraft/Named").append(cls).append('\n');
+		}
+
+		int field = 0, method = 0;
+
+		for (int cls = 0; cls < classes; cls++) {
+			for (int i = 0; i < fields; i++, field++) {
+				tiny.append("FIELD\tc").append(cls).append("\tLc").append(random.nextInt(classes)).append(";\tf").append(i)
+					.append("\tfield_").append(field).append("\tnamedField").append(field).append('\n');
+			}
+
+			for (int i = 0; i < methods; i++, method++) {
+				tiny.append("METHOD\tc").append(cls).append("\t(Lc").append(random.nextInt(classes)).append(";)V\tm").append(i)
+					.append("\tmethod_").append(method).append("\tnamedMethod").append(method).append('\n');
+			}
+		}
+
+		return MappingsProvider.readTinyMappings(new ByteArrayInputStream(tiny.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MappingResolver createResolver(BinaryMappings mappings) throws Exception {
+		// Package private, as only the loader itself creates it
+		Constructor<?> constructor = Class.forName("net.fabricmc.loader.FabricMappingResolver").getDeclaredConstructor(Supplier.class, String.class);
+		constructor.setAccessible(true);
+
+		return (MappingResolver) constructor.newInstance((Supplier<BinaryMappings>) () -> mappings, TO);
+	}
+
+	/**
+	 * @return The maps the resolver used to build for a namespace before answering anything.
+	 */
+	private static Object createNamespaceMaps(BinaryMappings mappings) {
+		int from = mappings.getNamespaceId(FROM);
+		int to = mappings.getNamespaceId(TO);
+		Map<String, String> classNames = new HashMap<>();
+		Map<String, String> classNamesInverse = new HashMap<>();
+		Map<String, String> fieldNames = new HashMap<>();
+		Map<String, String> methodNames = new HashMap<>();
+
+		for (int i = 0; i < mappings.getClassCount(); i++) {
+			String fromClass = mappings.getClassName(i, from).replace('/', '.');
+			String toClass = mappings.getClassName(i, to).replace('/', '.');
+
+			classNames.put(fromClass, toClass);
+			classNamesInverse.put(toClass, fromClass);
+		}
+
+		BinaryMappings.Members fields = mappings.getFields();
+
+		for (int i = 0; i < fields.size(); i++) {
+			fieldNames.put(fields.getOwner(i, from) + ";;" + fields.getName(i, from) + ";;" + fields.getDesc(i, from), fields.getName(i, to));
+		}
+
+		BinaryMappings.Members methods = mappings.getMethods();
+
+		for (int i = 0; i < methods.size(); i++) {
+			methodNames.put(methods.getOwner(i, from) + ";;" + methods.getName(i, from) + ";;" + methods.getDesc(i, from), methods.getName(i, to));
+		}
+
+		return new Object[] { classNames, classNamesInverse, fieldNames, methodNames };
+	}
+
+	private static void lookUp(MappingResolver resolver, BinaryMappings mappings, Random random) {
+		int from = mappings.getNamespaceId(FROM);
+		BinaryMappings.Members methods = mappings.getMethods();
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			resolver.mapClassName(FROM, "c" + random.nextInt(mappings.getClassCount()));
+
+			int method = random.nextInt(methods.size());
+			resolver.mapMethodName(FROM, methods.getOwner(method, from).replace('/', '.'), methods.getName(method, from), methods.getDesc(method, from));
+		}
+	}
+
+	/**
+	 * @return The least heap in use over a few rounds of collecting garbage, as one round doesn't always get it all.
+	 */
+	private static long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(20);
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+
+		return used;
+	}
+
+	/**
+	 * Measures a single run, in its own method so nothing from it is still reachable once the next one starts.
+	 */
+	private static void run(int run, Path file, long seed) throws Exception {
+		BinaryMappings mappings = BinaryMappings.open(file);
+		long before = usedMemory();
+		long start = System.nanoTime();
+		MappingResolver resolver = createResolver(mappings);
+		String mapped = resolver.mapClassName(FROM, "c0");
+		long firstLookup = System.nanoTime() - start;
+
+		if (!"net.minecraft.class_0".equals(mapped)) {
+			throw new RuntimeException("c0 was mapped to " + mapped);
+		}
+
+		lookUp(resolver, mappings, new Random(seed + run));
+		long retained = usedMemory() - before;
+
+		before = usedMemory();
+		start = System.nanoTime();
+		Object namespaceMaps = createNamespaceMaps(mappings);
+		long eagerFirstLookup = System.nanoTime() - start;
+		long eagerRetained = usedMemory() - before;
+
+		LOGGER.info("Run %d: first lookup in %.2f ms (%.2f ms building every map), %d KiB retained after %d lookups (%d KiB for every map)", run,
+			firstLookup / 1e6, eagerFirstLookup / 1e6, retained / 1024, LOOKUPS * 2, eagerRetained / 1024);
+
+		// Keep everything alive until it's been measured
+		if (resolver.getNamespaces().isEmpty() || namespaceMaps == null) {
+			throw new IllegalStateException();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 6000;
+		int fields = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int methods = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+		Path file = Files.createTempFile("mappings", ".bin");
+
+		try {
+			// Compiled to a file and memory mapped, as on any launch after the first
+			BinaryMappings.write(generate(classes, fields, methods, new Random(seed)), file);
+			LOGGER.info("Resolving against %d classes, %d fields and %d methods", classes, classes * fields, classes * methods);
+
+			for (int run = 0; run < 10; run++) {
+				run(run, file, seed);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
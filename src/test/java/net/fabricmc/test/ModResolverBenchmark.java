@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.test;
+
+import net.fabricmc.loader.discovery.ModCandidate;
+import net.fabricmc.loader.discovery.ModCandidateSet;
+import net.fabricmc.loader.discovery.ModResolutionException;
+import net.fabricmc.loader.discovery.ModResolver;
+import net.fabricmc.loader.metadata.ModMetadataParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times {@link ModResolver#findCompatibleSet} against synthetic mod packs: a set of top level mods depending on
+ * libraries with many nested versions, all with overlapping version ranges. In the first pack every range allows the
+ * newest version of a library, in the second most libraries have to be downgraded.
+ *
+ * <p>Arguments (all optional): top level mods, libraries, versions per library, random seed.</p>
+ */
+public class ModResolverBenchmark {
+	private static final Logger LOGGER = LogManager.getFormatterLogger("ModResolverBenchmark");
+
+	/**
+	 * @return A random range which always includes the middle version, so every pack is solvable in at least one way.
+	 */
+	private static String range(Random random, int versions, boolean newest) {
+		int min = random.nextInt(versions / 2 + 1);
+		int max = newest ? versions : versions / 2 + 1 + random.nextInt(versions - versions / 2);
+		return ">=1." + min + ".0 <1." + max + ".0";
+	}
+
+	private static void add(Map<String, ModCandidateSet> sets, String id, String version, int depth, String depends) throws Exception {
+		String json = "{\"schemaVersion\": 1, \"id\": \"" + id + "\", \"version\": \"" + version + "\", \"depends\": {" + depends + "}}";
+		ModCandidate candidate = new ModCandidate(
+			ModMetadataParser.getMods(null, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))[0],
+			new URL("file:/benchmark/" + id + "-" + version + ".jar"),
+			depth
+		);
+
+		sets.computeIfAbsent(id, ModCandidateSet::new).add(candidate);
+	}
+
+	private static Map<String, ModCandidateSet> generate(int mods, int libraries, int versions, long seed, boolean newest) throws Exception {
+		Random random = new Random(seed);
+		Map<String, ModCandidateSet> sets = new HashMap<>();
+
+		for (int lib = 0; lib < libraries; lib++) {
+			for (int version = 0; version < versions; version++) {
+				StringBuilder depends = new StringBuilder();
+
+				// Libraries only depend on earlier ones, so there are no cycles
+				for (int i = 0; i < 2 && lib > 0; i++) {
+					if (depends.length() > 0) depends.append(", ");
+					depends.append("\"lib-").append(random.nextInt(lib)).append("\": \"").append(range(random, versions, newest)).append('"');
+				}
+
+				add(sets, "lib-" + lib, "1." + version + ".0", 1, depends.toString());
+			}
+		}
+
+		for (int mod = 0; mod < mods; mod++) {
+			StringBuilder depends = new StringBuilder();
+
+			for (int i = 0; i < 5; i++) {
+				if (depends.length() > 0) depends.append(", ");
+				depends.append("\"lib-").append(random.nextInt(libraries)).append("\": \"").append(range(random, versions, newest)).append('"');
+			}
+
+			add(sets, "mod-" + mod, "1.0.0", 0, depends.toString());
+		}
+
+		return sets;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int mods = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int libraries = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		int versions = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+		Map<String, ModCandidateSet> sets = null;
+
+		for (boolean newest : new boolean[] { true, false }) {
+			sets = generate(mods, libraries, versions, seed, newest);
+			LOGGER.info("Resolving %d mods from %d candidates, %s", mods, mods + libraries * versions, newest ? "newest versions fit" : "with downgrades");
+
+			for (int run = 0; run < 10; run++) {
+				long start = System.nanoTime();
+				int resolved;
+
+				try {
+					resolved = new ModResolver().findCompatibleSet(LOGGER, sets).size();
+				} catch (ModResolutionException e) {
+					LOGGER.info("Resolution failed: " + e.getMessage());
+					resolved = -1;
+				}
+
+				LOGGER.info("Run %d: %d mods resolved in %.1f ms", run, resolved, (System.nanoTime() - start) / 1e6);
+			}
+		}
+
+		// Two mods wanting disjoint versions of the same library
+		add(sets, "conflict-a", "1.0.0", 0, "\"lib-0\": \">=1." + (versions - 1) + ".0\"");
+		add(sets, "conflict-b", "1.0.0", 0, "\"lib-0\": \"<1.1.0\"");
+
+		try {
+			new ModResolver().findCompatibleSet(LOGGER, sets);
+			throw new RuntimeException("Conflicting mods were resolved!");
+		} catch (ModResolutionException e) {
+			LOGGER.info("Conflict reported as: " + e.getMessage());
+		}
+	}
+}
@@ -18,9 +18,12 @@ package net.fabricmc.test;
 
 import net.fabricmc.loader.util.version.SemanticVersionImpl;
 import net.fabricmc.loader.util.version.SemanticVersionPredicateParser;
+import net.fabricmc.loader.util.version.VersionIntervalSet;
 import net.fabricmc.loader.util.version.VersionParsingException;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.function.Predicate;
 
 public class VersionParsingTests {
@@ -57,6 +60,41 @@ public class VersionParsingTests {
 		}
 	}
 
+	private static final String[] INTERVAL_VERSIONS = {
+		"0.0.0", "0.0.1", "0.1.0", "0.2.2", "0.2.3", "0.2.4", "0.3.0",
+		"1.0.0", "1.1.9", "1.2.0", "1.2.2", "1.2.3", "1.2.4", "1.2.99", "1.3.0", "1.3.5", "1.99.0",
+		"2.0.0", "2.0.0.1", "2.4.1", "3.0.0", "32767.0.0", "32767.65535.65535.65535"
+	};
+
+	/**
+	 * @return Whether the compiled predicates match the same release versions as the predicates themselves.
+	 */
+	private static boolean compilesLike(String... predicates) throws VersionParsingException {
+		VersionIntervalSet set = VersionIntervalSet.compile(Arrays.asList(predicates));
+		if (set == null) return false;
+
+		for (String s : INTERVAL_VERSIONS) {
+			SemanticVersionImpl version = new SemanticVersionImpl(s, false);
+			if (VersionIntervalSet.getKey(version) == VersionIntervalSet.NO_KEY) return false;
+
+			boolean expected = false;
+
+			for (String predicate : predicates) {
+				expected |= SemanticVersionPredicateParser.create(predicate).test(version);
+			}
+
+			if (set.contains(VersionIntervalSet.getKey(version)) != expected) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean compiles(String predicate) {
+		return VersionIntervalSet.compile(Collections.singletonList(predicate)) != null;
+	}
+
 	public static void main(String[] args) throws Exception {
 		// Test: Semantic version creation.
 		testTrue(tryParseSemantic("0.3.5", false));
@@ -183,5 +221,52 @@ public class VersionParsingTests {
 			testFalse(predicate.test(new SemanticVersionImpl("1.2.4-alpha.4", false)));
 			testFalse(predicate.test(new SemanticVersionImpl("1.2.3-alpha.4", false)));
 		}
+
+		// Test: compiled version intervals.
+		testTrue(compilesLike("1.2.3"));
+		testTrue(compilesLike("=1.2.3"));
+		testTrue(compilesLike(">1.2.3"));
+		testTrue(compilesLike(">=1.2.3"));
+		testTrue(compilesLike("<1.2.3"));
+		testTrue(compilesLike("<=1.2.3"));
+		testTrue(compilesLike("~1.2.3"));
+		testTrue(compilesLike("~1.2"));
+		testTrue(compilesLike("~1"));
+		testTrue(compilesLike("^1.2.3"));
+		testTrue(compilesLike("^2"));
+		testTrue(compilesLike("1.3.x"));
+		testTrue(compilesLike("2.x"));
+		testTrue(compilesLike("*"));
+		testTrue(compilesLike(">=0.3.1 <1.3.0"));
+		testTrue(compilesLike(">1.2.3 <=2.0.0"));
+		testTrue(compilesLike(">=2.0.0 <1.0.0"));
+		testTrue(compilesLike("1.2.x", "~1.3", ">=3.0.0"));
+		testTrue(compilesLike("<=1.2.3", ">=1.2.4"));
+
+		// Test: compiled version intervals with pre-release targets.
+		testTrue(compilesLike("=1.2.3-beta.2"));
+		testTrue(compilesLike(">1.2.3-beta.2"));
+		testTrue(compilesLike(">=1.2.3-beta.2"));
+		testTrue(compilesLike("<1.2.3-beta.2"));
+		testTrue(compilesLike("<=1.2.3-beta.2"));
+		testTrue(compilesLike("~1.2.3-beta.2"));
+		testTrue(compilesLike("^1.2.3-beta.2"));
+		testTrue(compilesLike(">=0.3.1-beta.2 <1.3.0-rc.1"));
+
+		// Test: predicates which can't be compiled to intervals.
+		testFalse(compiles("^0.2.3"));
+		testFalse(compiles("^0.x"));
+		testFalse(compiles("1.x.3"));
+		testFalse(compiles("~1-beta.1"));
+		testFalse(compiles("1.2.3.4.5"));
+		testFalse(compiles(">=1.2.3.4.5"));
+		testFalse(compiles("32768.0.0"));
+		testFalse(compiles(">=40000"));
+		testFalse(compiles("1.2.3.4.0"));
+		testTrue(compiles("32767.0.0"));
+		testTrue(VersionIntervalSet.compile(Arrays.asList("1.2.3", "^0.2.3")) == null);
+		testTrue(VersionIntervalSet.getKey(new SemanticVersionImpl("32768.0.0", false)) == VersionIntervalSet.NO_KEY);
+		testTrue(VersionIntervalSet.getKey(new SemanticVersionImpl("1.2.3.4.5", false)) == VersionIntervalSet.NO_KEY);
+		testTrue(VersionIntervalSet.getKey(new SemanticVersionImpl("1.2.3-beta.2", false)) == VersionIntervalSet.NO_KEY);
 	}
 }
@@ -24,6 +24,8 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.function.Supplier;
+
 @Mixin(value = MainMenuScreen.class, remap = false)
 public abstract class MixinGuiMain extends Screen {
 
@@ -33,7 +35,16 @@ public abstract class MixinGuiMain extends Screen {
 
 	@Inject(method = "render(IIF)V", at = @At("RETURN"))
 	public void render(int mouseX, int mouseY, float delta, CallbackInfo info) {
-		this.font.draw("Fabric Test Mod", 2, this.height - 30, -1);
+		// An anonymous class makes Mixin generate an inner class for the target, which must still load when launching
+		// again with a warm class cache (-Dfabric.loader.classCache=true)
+		Supplier<String> label = new Supplier<String>() {
+			@Override
+			public String get() {
+				return "Fabric Test Mod";
+			}
+		};
+
+		this.font.draw(label.get(), 2, this.height - 30, -1);
 	}
 
 }